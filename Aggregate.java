@@ -0,0 +1,20 @@
+/**
+ * The ways that the values of a field can be combined by a DatasetQuery.
+ * Null values are always left out.
+ *
+ * @version 2026.10.18
+ */
+public enum Aggregate {
+    // The total of the values
+    SUM,
+    // The mean of the values
+    AVG,
+    // The smallest value
+    MIN,
+    // The largest value
+    MAX,
+    // The number of non-null values
+    COUNT,
+    // The value on the latest date
+    LAST
+}
@@ -0,0 +1,124 @@
+/**
+ * The running state of one aggregate of one group while a query is worked
+ * out: the count, sum, smallest and largest of the values added so far, and
+ * the value on the latest date. Every Aggregate can be found from this state.
+ *
+ * States for different parts of the data (e.g. different boroughs) can be
+ * merged, giving the same state as if every value had been added to one.
+ *
+ * @version 2026.10.18
+ */
+public class AggregateState {
+    private long count;
+    private long sum;
+    private int min = Integer.MAX_VALUE;
+    private int max = Integer.MIN_VALUE;
+
+    // The newest value, and the date and store row it came from (rows break
+    // ties between values on the same date)
+    private int lastDay = Integer.MIN_VALUE;
+    private int lastRow = -1;
+    private int lastValue;
+
+    /**
+     * Adds a single value.
+     *
+     * @param epochDay the date of the value's row
+     * @param row      the index of the value's row in the store
+     * @param value    the value
+     */
+    public void add(int epochDay, int row, int value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        setLastIfNewer(epochDay, row, value);
+    }
+
+    /**
+     * Adds the count and sum of many values at once, e.g. from running totals.
+     * The smallest, largest and last values are not changed.
+     *
+     * @param valueCount the number of values
+     * @param valueSum   the sum of the values
+     */
+    public void addTotals(long valueCount, long valueSum) {
+        count += valueCount;
+        sum += valueSum;
+    }
+
+    /**
+     * Adds the count, sum, smallest and largest of many values at once, e.g.
+     * from a rollup. The last value is not changed.
+     *
+     * @param valueCount the number of values
+     * @param valueSum   the sum of the values
+     * @param valueMin   the smallest of the values
+     * @param valueMax   the largest of the values
+     */
+    public void addSummary(long valueCount, long valueSum, int valueMin, int valueMax) {
+        if (valueCount > 0) {
+            addTotals(valueCount, valueSum);
+            min = Math.min(min, valueMin);
+            max = Math.max(max, valueMax);
+        }
+    }
+
+    /**
+     * Replaces the last value if the given one is newer.
+     *
+     * @param epochDay the date of the value's row
+     * @param row      the index of the value's row in the store
+     * @param value    the value
+     */
+    public void setLastIfNewer(int epochDay, int row, int value) {
+        if (epochDay > lastDay || (epochDay == lastDay && row > lastRow)) {
+            lastDay = epochDay;
+            lastRow = row;
+            lastValue = value;
+        }
+    }
+
+    /**
+     * Adds all the values of another state to this one.
+     *
+     * @param other the state to merge into this one
+     */
+    public void merge(AggregateState other) {
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        if (other.lastRow >= 0) {
+            setLastIfNewer(other.lastDay, other.lastRow, other.lastValue);
+        }
+    }
+
+    /**
+     * @param aggregate the aggregate to work out
+     * @return the aggregate of the values added, or null if there were none
+     *         (COUNT is 0 instead)
+     */
+    public Double getResult(Aggregate aggregate) {
+        if (aggregate == Aggregate.COUNT) {
+            return (double) count;
+        }
+        if (aggregate == Aggregate.LAST) {
+            return lastRow < 0 ? null : (double) lastValue;
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        switch (aggregate) {
+            case SUM:
+                return (double) sum;
+            case AVG:
+                return (double) sum / count;
+            case MIN:
+                return (double) min;
+            default:
+                return (double) max;
+        }
+    }
+}
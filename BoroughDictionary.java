@@ -0,0 +1,215 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps borough names to small integer ids. The London boroughs always have
+ * the ids 0 to 32, in the order of the boroughs table in Dataset. Any other
+ * borough found while loading is given the next free id.
+ *
+ * Names can be looked up straight from the bytes of the csv file, so that no
+ * String has to be created for a borough that is already known. Everything
+ * after loading works with the ids, and names are only looked up to show them.
+ *
+ * @version 2026.10.18
+ */
+public class BoroughDictionary {
+    // The London boroughs (+ City Of London), in alphabetical order
+    public static final String[] LONDON_BOROUGHS = { "Barking And Dagenham", "Barnet", "Bexley", "Brent",
+            "Bromley", "Camden", "City Of London", "Croydon", "Ealing", "Enfield", "Greenwich", "Hackney",
+            "Hammersmith And Fulham", "Haringey", "Harrow", "Havering", "Hillingdon", "Hounslow", "Islington",
+            "Kensington And Chelsea", "Kingston Upon Thames", "Lambeth", "Lewisham", "Merton", "Newham", "Redbridge",
+            "Richmond Upon Thames", "Southwark", "Sutton", "Tower Hamlets", "Waltham Forest", "Wandsworth",
+            "Westminster" };
+
+    // Shared dictionary used by the loader and the dataset
+    private static final BoroughDictionary instance = new BoroughDictionary();
+
+    // Every known borough. Replaced (never changed) when a name is added, so
+    // that lookups do not need to lock.
+    private volatile Entries entries;
+
+    private BoroughDictionary() {
+        entries = new Entries(LONDON_BOROUGHS.clone());
+    }
+
+    /**
+     * @return the dictionary shared by the whole application
+     */
+    public static BoroughDictionary getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the id of the borough whose name is stored in the given bytes,
+     * adding the borough if it has not been seen before. The name is found
+     * with a hash of its bytes, so the lookup does not depend on the number of
+     * boroughs.
+     *
+     * @param buffer the buffer holding the name
+     * @param from   the position of the first byte of the name
+     * @param to     the position just after the last byte of the name
+     * @return the id of the borough
+     */
+    public int getId(ByteBuffer buffer, int from, int to) {
+        int id = entries.find(buffer, from, to);
+        if (id >= 0) {
+            return id;
+        }
+
+        // Only unknown boroughs need a String
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buffer.get(i);
+        }
+        return add(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the id of the given borough, adding the borough if it has not been
+     * seen before.
+     *
+     * @param name the name of the borough
+     * @return the id of the borough
+     */
+    public int getId(String name) {
+        int id = findId(name);
+        return id >= 0 ? id : add(name);
+    }
+
+    /**
+     * Returns the id of the given borough, without adding it if it has not been
+     * seen before.
+     *
+     * @param name the name of the borough
+     * @return the id of the borough, or -1 if it is not in the dictionary
+     */
+    public int findId(String name) {
+        Integer id = entries.ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id the id of a borough
+     * @return the name of the borough with the given id
+     */
+    public String getName(int id) {
+        return entries.names[id];
+    }
+
+    /**
+     * @return the number of boroughs in the dictionary
+     */
+    public int size() {
+        return entries.names.length;
+    }
+
+    /**
+     * Adds a borough to the dictionary, unless another thread added it first.
+     *
+     * @param name the name of the borough
+     * @return the id of the borough
+     */
+    private synchronized int add(String name) {
+        Entries current = entries;
+        int existing = findId(name);
+        if (existing >= 0) {
+            return existing;
+        }
+
+        String[] names = Arrays.copyOf(current.names, current.names.length + 1);
+        names[names.length - 1] = name;
+        entries = new Entries(names);
+        return names.length - 1;
+    }
+
+    /**
+     * The names of the known boroughs, indexed by id, with a hash table for
+     * finding the id of a name from its UTF-8 bytes and a map for finding it
+     * from a String.
+     */
+    private static final class Entries {
+        private final String[] names;
+        private final byte[][] encodedNames;
+        private final Map<String, Integer> ids;
+
+        // Open addressing table of (id + 1) by the hash of the name's bytes (0
+        // for an empty slot), at most half full
+        private final int[] slots;
+
+        Entries(String[] names) {
+            this.names = names;
+            encodedNames = new byte[names.length][];
+            ids = new HashMap<>();
+            slots = new int[Integer.highestOneBit(Math.max(names.length, 8) * 2) * 2];
+
+            for (int id = 0; id < names.length; id++) {
+                encodedNames[id] = names[id].getBytes(StandardCharsets.UTF_8);
+                ids.put(names[id], id);
+
+                int slot = hash(encodedNames[id]) & (slots.length - 1);
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & (slots.length - 1);
+                }
+                slots[slot] = id + 1;
+            }
+        }
+
+        /**
+         * @return the id of the name stored in the bytes, or -1 if it is not
+         *         known
+         */
+        int find(ByteBuffer buffer, int from, int to) {
+            int hash = 0;
+            for (int i = from; i < to; i++) {
+                hash = 31 * hash + buffer.get(i);
+            }
+
+            int slot = mix(hash) & (slots.length - 1);
+            while (slots[slot] != 0) {
+                int id = slots[slot] - 1;
+                if (matches(encodedNames[id], buffer, from, to)) {
+                    return id;
+                }
+                slot = (slot + 1) & (slots.length - 1);
+            }
+            return -1;
+        }
+
+        /**
+         * @return the slot hash of a name's bytes, as worked out by find()
+         */
+        private static int hash(byte[] name) {
+            int hash = 0;
+            for (byte b : name) {
+                hash = 31 * hash + b;
+            }
+            return mix(hash);
+        }
+
+        /**
+         * Spreads the bits of a hash, so that similar names use different slots.
+         */
+        private static int mix(int hash) {
+            hash *= 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * @return true if the bytes in the buffer are the same as the given name
+     */
+    private static boolean matches(byte[] name, ByteBuffer buffer, int from, int to) {
+        if (name.length != to - from) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != buffer.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
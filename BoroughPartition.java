@@ -0,0 +1,457 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The rows of a ColumnStore that belong to one borough, in date order (oldest
+ * first). A partition only holds the indexes of its rows, so reading a
+ * borough's data never has to look at the rows of any other borough.
+ *
+ * When newer rows are added to the store, the partition of the new store is
+ * made with withRowsAdded(), which only works out the indexes of the new rows.
+ * When rows are revised, withRowsRevised() only works out the indexes again
+ * from the first revised row. The arrays may have room for more rows than the
+ * partition holds, and are shared with the partition of the next store where
+ * they have room and are not changed.
+ *
+ * @version 2026.10.18
+ */
+public class BoroughPartition {
+    private final ColumnStore store;
+    private final int boroughId;
+
+    // Number of the borough's rows
+    private final int size;
+
+    // Indexes of the borough's rows in the store, in increasing order (only
+    // the first size are used)
+    private final int[] rows;
+
+    // Whether the partition of a newer store has taken over the spare room in
+    // the arrays
+    private boolean arraysShared = false;
+
+    // For each additive field (null for the others): the sum of the non-null
+    // values, and the number of them, in the first i rows of the partition
+    private final long[][] prefixSums;
+    private final int[][] prefixCounts;
+
+    // For each field: the position of the newest row at or before position i
+    // where the field is not null (-1 if there is none)
+    private final int[][] lastValidIndexes;
+
+    // Aggregates of each ISO week and calendar month
+    private final RollupTable weekRollup;
+    private final RollupTable monthRollup;
+
+    // Rolling windows that have been asked for, by field and number of days
+    private final Map<Integer, RollingWindow> rollingWindows = new HashMap<>();
+
+    /**
+     * @param store     the store holding the rows
+     * @param boroughId the id of the borough in the BoroughDictionary
+     * @param rows      the indexes of the borough's rows, in increasing order
+     */
+    BoroughPartition(ColumnStore store, int boroughId, int[] rows) {
+        this.store = store;
+        this.boroughId = boroughId;
+        this.size = rows.length;
+        this.rows = rows;
+
+        DataField[] fields = DataField.values();
+        prefixSums = new long[fields.length][];
+        prefixCounts = new int[fields.length][];
+        lastValidIndexes = new int[fields.length][];
+        for (DataField field : fields) {
+            if (field.isAdditive()) {
+                prefixSums[field.ordinal()] = new long[size + 1];
+                prefixCounts[field.ordinal()] = new int[size + 1];
+                buildPrefixSums(field, 0);
+            }
+            lastValidIndexes[field.ordinal()] = new int[size];
+            buildLastValidIndexes(field, 0);
+        }
+
+        weekRollup = new RollupTable(store, this, GroupBy.WEEK);
+        monthRollup = new RollupTable(store, this, GroupBy.MONTH);
+    }
+
+    /**
+     * Creates the partition of a store that holds the rows of an older
+     * partition's store, some of them with revised values, followed by newer
+     * rows.
+     *
+     * @param store          the store holding the rows
+     * @param previous       the partition of the same borough in the older
+     *                       store
+     * @param addedRows      the indexes of the borough's new rows, in
+     *                       increasing order and after every row of the older
+     *                       store
+     * @param revisedIndexes the positions in the partition of the rows whose
+     *                       values may have been revised
+     */
+    private BoroughPartition(ColumnStore store, BoroughPartition previous, int[] addedRows, int[] revisedIndexes) {
+        this.store = store;
+        this.boroughId = previous.boroughId;
+        this.size = previous.size + addedRows.length;
+
+        // Use the spare room in the older partition's arrays if there is enough,
+        // otherwise copy them with room to grow. Without new rows the arrays
+        // are only read, so they are used as they are but must be copied
+        // before rows are added to them.
+        int capacity = previous.rows.length;
+        boolean share = previous.shareArrays(size);
+        boolean copy = !share && addedRows.length > 0;
+        if (copy) {
+            capacity = Math.max(size, capacity * 2);
+        }
+        arraysShared = !share && !copy;
+
+        rows = copy ? Arrays.copyOf(previous.rows, capacity) : previous.rows;
+        System.arraycopy(addedRows, 0, rows, previous.size, addedRows.length);
+
+        DataField[] fields = DataField.values();
+        prefixSums = new long[fields.length][];
+        prefixCounts = new int[fields.length][];
+        lastValidIndexes = new int[fields.length][];
+        for (DataField field : fields) {
+            int f = field.ordinal();
+
+            // Entries from the first revised value on are worked out again,
+            // in a copy of the array so that the older partition is unchanged
+            if (field.isAdditive()) {
+                int sumsFrom = findFirstRevised(previous, revisedIndexes, field, false);
+                boolean copySums = copy || sumsFrom < previous.size;
+                prefixSums[f] = copySums ? Arrays.copyOf(previous.prefixSums[f], capacity + 1)
+                        : previous.prefixSums[f];
+                prefixCounts[f] = copySums ? Arrays.copyOf(previous.prefixCounts[f], capacity + 1)
+                        : previous.prefixCounts[f];
+                buildPrefixSums(field, sumsFrom);
+            }
+
+            int validFrom = findFirstRevised(previous, revisedIndexes, field, true);
+            boolean copyLastValid = copy || validFrom < previous.size;
+            lastValidIndexes[f] = copyLastValid ? Arrays.copyOf(previous.lastValidIndexes[f], capacity)
+                    : previous.lastValidIndexes[f];
+            buildLastValidIndexes(field, validFrom);
+        }
+
+        weekRollup = previous.weekRollup.updated(store, this, revisedIndexes);
+        monthRollup = previous.monthRollup.updated(store, this, revisedIndexes);
+    }
+
+    /**
+     * Returns the partition of a store that holds the rows of this partition's
+     * store followed by newer rows. Only the indexes of the new rows are
+     * worked out, and only the last week and month of the rollups are
+     * aggregated again.
+     *
+     * @param newStore  the store holding the rows
+     * @param addedRows the indexes of the borough's new rows in the new store,
+     *                  in increasing order and after every row of this
+     *                  partition's store
+     * @return the partition of the borough in the new store
+     */
+    BoroughPartition withRowsAdded(ColumnStore newStore, int[] addedRows) {
+        return new BoroughPartition(newStore, this, addedRows, new int[0]);
+    }
+
+    /**
+     * Returns the partition of a store that holds the rows of this partition's
+     * store with new values in some of them. The running sums and last valid
+     * indexes of a field are only worked out again from the first row whose
+     * value of the field changed, and only the weeks and months holding the
+     * revised rows are aggregated again.
+     *
+     * @param newStore    the store holding the rows
+     * @param revisedRows the indexes of the borough's revised rows in the store
+     * @return the partition of the borough in the new store
+     */
+    BoroughPartition withRowsRevised(ColumnStore newStore, int[] revisedRows) {
+        int[] revisedIndexes = new int[revisedRows.length];
+        for (int i = 0; i < revisedRows.length; i++) {
+            revisedIndexes[i] = Arrays.binarySearch(rows, 0, size, revisedRows[i]);
+        }
+        return new BoroughPartition(newStore, this, new int[0], revisedIndexes);
+    }
+
+    /**
+     * Finds the first revised row where a field differs from the older
+     * partition.
+     *
+     * @param previous       the older partition
+     * @param revisedIndexes the positions of the revised rows
+     * @param nullsOnly      whether only a change between null and not null
+     *                       counts
+     * @return the position of the first changed row, or the size of the older
+     *         partition if none of them changed
+     */
+    private int findFirstRevised(BoroughPartition previous, int[] revisedIndexes, DataField field,
+            boolean nullsOnly) {
+        int first = previous.size;
+        for (int index : revisedIndexes) {
+            int row = rows[index];
+            boolean isNull = store.isNull(row, field);
+            if (isNull != previous.store.isNull(row, field)
+                    || !nullsOnly && !isNull && store.getInt(row, field) != previous.store.getInt(row, field)) {
+                first = Math.min(first, index);
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Hands the spare room in the arrays over to the partition of a newer
+     * store, if there is enough of it and it has not been handed over before.
+     *
+     * @param newSize the number of rows the newer partition holds
+     * @return true if the newer partition may write to the arrays after this
+     *         partition's rows
+     */
+    private synchronized boolean shareArrays(int newSize) {
+        if (arraysShared || rows.length < newSize) {
+            return false;
+        }
+        arraysShared = true;
+        return true;
+    }
+
+    /**
+     * Works out the running sum and count of the non-null values of a field,
+     * so that the sum over any range of rows is the difference of two entries.
+     *
+     * @param from the position of the first row whose entry is worked out (the
+     *             entries before it must already be filled in)
+     */
+    private void buildPrefixSums(DataField field, int from) {
+        long[] sums = prefixSums[field.ordinal()];
+        int[] counts = prefixCounts[field.ordinal()];
+        for (int i = from; i < size; i++) {
+            sums[i + 1] = sums[i];
+            counts[i + 1] = counts[i];
+            if (!store.isNull(rows[i], field)) {
+                sums[i + 1] += store.getInt(rows[i], field);
+                counts[i + 1]++;
+            }
+        }
+    }
+
+    /**
+     * Works out, for every row, where the newest non-null value of a field at
+     * or before that row is, so that it can be found without scanning back.
+     *
+     * @param from the position of the first row whose entry is worked out (the
+     *             entries before it must already be filled in)
+     */
+    private void buildLastValidIndexes(DataField field, int from) {
+        int[] lastValid = lastValidIndexes[field.ordinal()];
+        int last = from == 0 ? -1 : lastValid[from - 1];
+        for (int i = from; i < size; i++) {
+            if (!store.isNull(rows[i], field)) {
+                last = i;
+            }
+            lastValid[i] = last;
+        }
+    }
+
+    /**
+     * @return the id of the borough in the BoroughDictionary
+     */
+    public int getBoroughId() {
+        return boroughId;
+    }
+
+    /**
+     * @return the number of rows for the borough
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the position of a row in the partition, from 0 (oldest) to
+     *              size() - 1 (newest)
+     * @return the index of the row in the store
+     */
+    public int getRow(int index) {
+        return rows[index];
+    }
+
+    /**
+     * @param epochDay a date, as an epoch day
+     * @return the position of the first row dated on or after the date (size()
+     *         if there is none)
+     */
+    public int findFirstIndexFrom(int epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (store.getEpochDay(rows[middle]) < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param epochDay a date, as an epoch day
+     * @return the position of the first row dated after the date (size() if
+     *         there is none)
+     */
+    public int findFirstIndexAfter(int epochDay) {
+        return epochDay == Integer.MAX_VALUE ? size : findFirstIndexFrom(epochDay + 1);
+    }
+
+    /**
+     * Adds up the non-null values of an additive field between two dates,
+     * without reading the rows in between.
+     *
+     * @param field   an additive field (see DataField.isAdditive())
+     * @param fromDay the first date to include, as an epoch day
+     * @param toDay   the last date to include, as an epoch day
+     * @return the sum of the field's values in the date range (0 if none)
+     * @throws IllegalArgumentException if the field is not additive
+     */
+    public long getSum(DataField field, int fromDay, int toDay) {
+        long[] sums = getPrefixSums(field);
+        int first = findFirstIndexFrom(fromDay);
+        int end = Math.max(first, findFirstIndexAfter(toDay));
+        return sums[end] - sums[first];
+    }
+
+    /**
+     * @param field   an additive field (see DataField.isAdditive())
+     * @param fromDay the first date to include, as an epoch day
+     * @param toDay   the last date to include, as an epoch day
+     * @return the number of rows between the two dates where the field is not
+     *         null
+     * @throws IllegalArgumentException if the field is not additive
+     */
+    public int getValueCount(DataField field, int fromDay, int toDay) {
+        getPrefixSums(field);
+        int[] counts = prefixCounts[field.ordinal()];
+        int first = findFirstIndexFrom(fromDay);
+        int end = Math.max(first, findFirstIndexAfter(toDay));
+        return counts[end] - counts[first];
+    }
+
+    /**
+     * Finds the newest row between two dates where a field is not null, using
+     * a binary search for the end of the range and a single array read.
+     *
+     * @param field   the field that must not be null
+     * @param fromDay the first date to include, as an epoch day
+     * @param toDay   the last date to include, as an epoch day
+     * @return the position of the row in the partition, or -1 if the field is
+     *         null on every day in the range
+     */
+    public int findLastValidIndex(DataField field, int fromDay, int toDay) {
+        int end = findFirstIndexAfter(toDay);
+        if (end == 0) {
+            return -1;
+        }
+
+        int lastValid = lastValidIndexes[field.ordinal()][end - 1];
+        if (lastValid < 0 || store.getEpochDay(rows[lastValid]) < fromDay) {
+            return -1;
+        }
+        return lastValid;
+    }
+
+    /**
+     * @param groupBy the size of the buckets (WEEK or MONTH)
+     * @return the weekly or monthly aggregates of the partition
+     * @throws IllegalArgumentException if groupBy is not WEEK or MONTH
+     */
+    public RollupTable getRollup(GroupBy groupBy) {
+        switch (groupBy) {
+            case WEEK:
+                return weekRollup;
+            case MONTH:
+                return monthRollup;
+            default:
+                throw new IllegalArgumentException("There are no rollups by " + groupBy);
+        }
+    }
+
+    /**
+     * Returns the rolling sums and averages of a field over a number of days.
+     * They are worked out the first time they are asked for, and kept.
+     *
+     * @param field a field with rolling windows (see
+     *              DataField.hasRollingWindows())
+     * @param days  the number of days in each window
+     * @return the rolling window of every row of the partition
+     * @throws IllegalArgumentException if the field has no rolling windows, or
+     *                                  days is less than 1
+     */
+    public synchronized RollingWindow getRollingWindow(DataField field, int days) {
+        if (!field.hasRollingWindows()) {
+            throw new IllegalArgumentException(field + " has no rolling windows");
+        }
+        if (days < 1) {
+            throw new IllegalArgumentException("A rolling window must be at least 1 day: " + days);
+        }
+
+        int key = days * DataField.values().length + field.ordinal();
+        RollingWindow window = rollingWindows.get(key);
+        if (window == null) {
+            window = new RollingWindow(store, this, field, days);
+            rollingWindows.put(key, window);
+        }
+        return window;
+    }
+
+    /**
+     * @return the running sums of the field
+     * @throws IllegalArgumentException if the field is not additive
+     */
+    private long[] getPrefixSums(DataField field) {
+        long[] sums = prefixSums[field.ordinal()];
+        if (sums == null) {
+            throw new IllegalArgumentException(field + " is not an additive field");
+        }
+        return sums;
+    }
+
+    /**
+     * @param fromDay the first date to include, as an epoch day
+     * @param toDay   the last date to include, as an epoch day
+     * @return the number of the borough's rows between the two dates
+     */
+    public int getRowCount(int fromDay, int toDay) {
+        return Math.max(0, findFirstIndexAfter(toDay) - findFirstIndexFrom(fromDay));
+    }
+
+    /**
+     * @return a cursor over every row of the borough, newest first
+     */
+    public ColumnCursor cursor() {
+        return new ColumnCursor(store, rows, 0, size);
+    }
+
+    /**
+     * @param first the position of the first row to visit
+     * @param end   the position just after the last row to visit
+     * @return a cursor over the borough's rows between the two positions,
+     *         newest first
+     */
+    public ColumnCursor cursorAt(int first, int end) {
+        return new ColumnCursor(store, rows, first, end);
+    }
+
+    /**
+     * @param fromDay the first date to include, as an epoch day
+     * @param toDay   the last date to include, as an epoch day
+     * @return a cursor over the borough's rows between the two dates
+     *         (inclusive), newest first
+     */
+    public ColumnCursor cursor(int fromDay, int toDay) {
+        int first = findFirstIndexFrom(fromDay);
+        int end = Math.max(first, findFirstIndexAfter(toDay));
+        return new ColumnCursor(store, rows, first, end);
+    }
+}
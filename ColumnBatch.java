@@ -0,0 +1,787 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * A growable block of parsed rows, stored one primitive array per column.
+ * Dates are stored as epoch days, boroughs as ids from the BoroughDictionary
+ * and every DataField as an int, with a bitmap marking which values are null.
+ *
+ * The loader parses straight into a batch, so that no objects are created
+ * for each row until the batch is turned into CovidData records.
+ *
+ * A batch may hold only some of the fields (a projection). The position of
+ * each row's line in the csv file is kept, and the other fields are read from
+ * its ColumnSource the first time they are used. A batch is not safe to use
+ * from several threads until every field has been loaded (see
+ * loadAllFields()).
+ *
+ * @version 2026.10.18
+ */
+public class ColumnBatch implements ColumnData {
+    private static final int FIELD_COUNT = DataField.values().length;
+
+    private int size;
+    private int[] dates;
+    private int[] boroughs;
+    private int[][] values;
+
+    // One bit per row for each field, set when the value is null. Fields that
+    // have not been loaded yet have neither values nor bits.
+    private long[][] nulls;
+
+    // Where the fields that have not been loaded are read from, and the
+    // position of each row's line in it (both null once every field is loaded)
+    private ColumnSource source;
+    private long[] lineStarts;
+
+    // Whether a batch returned by withRowsAdded() or withRowsRevised() has
+    // taken over the spare room in the arrays, so that this batch must not add
+    // rows to them
+    private boolean arraysShared = false;
+
+    /**
+     * Creates an empty batch holding every field.
+     *
+     * @param initialCapacity the number of rows to make room for
+     */
+    public ColumnBatch(int initialCapacity) {
+        this(initialCapacity, EnumSet.allOf(DataField.class));
+    }
+
+    /**
+     * Creates an empty batch holding only some of the fields. The position of
+     * each row's line must be set with setLineStart(), and a source given with
+     * setSource(), so that the other fields can be read when first used.
+     *
+     * @param initialCapacity the number of rows to make room for
+     * @param fields          the fields that are loaded with the rows
+     */
+    public ColumnBatch(int initialCapacity, Set<DataField> fields) {
+        int capacity = Math.max(initialCapacity, 64);
+        dates = new int[capacity];
+        boroughs = new int[capacity];
+        values = new int[FIELD_COUNT][];
+        nulls = new long[FIELD_COUNT][];
+        for (DataField field : fields) {
+            values[field.ordinal()] = new int[capacity];
+            nulls[field.ordinal()] = new long[(capacity + 63) >>> 6];
+        }
+        if (fields.size() < FIELD_COUNT) {
+            lineStarts = new long[capacity];
+        }
+    }
+
+    /**
+     * Creates a batch holding the same rows as the given records, in order.
+     *
+     * @param records the records to copy into the batch
+     * @return a batch with one row for each record
+     */
+    public static ColumnBatch fromRecords(List<CovidData> records) {
+        DataField[] fields = DataField.values();
+        ColumnBatch batch = new ColumnBatch(records.size());
+
+        for (CovidData record : records) {
+            int row = batch.addRow(record.getEpochDay(), record.getBoroughId());
+            for (DataField field : fields) {
+                if (!record.isNull(field)) {
+                    batch.setValue(row, field.ordinal(), record.getInt(field));
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Creates a batch holding the same rows as other rows, e.g. to add rows to
+     * rows held off the heap.
+     *
+     * @param rows the rows to copy into the batch
+     * @return a batch with the same rows, in order
+     */
+    public static ColumnBatch copyOf(ColumnData rows) {
+        ColumnBatch batch = new ColumnBatch(rows.size());
+        for (int row = 0; row < rows.size(); row++) {
+            batch.addRow(rows.getEpochDay(row), rows.getBoroughId(row));
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (!rows.isNull(row, field)) {
+                    batch.setValue(row, field, rows.getValue(row, field));
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Reads a batch that was written by writeTo().
+     *
+     * @param buffer     the buffer to read from, positioned at the first column
+     * @param size       the number of rows in the batch
+     * @param boroughIds the current borough id for each id stored in the buffer
+     * @return the batch that was read
+     */
+    public static ColumnBatch readFrom(ByteBuffer buffer, int size, int[] boroughIds) {
+        ColumnBatch batch = new ColumnBatch(size);
+        batch.size = size;
+
+        buffer.asIntBuffer().get(batch.dates, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+
+        buffer.asIntBuffer().get(batch.boroughs, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        for (int row = 0; row < size; row++) {
+            batch.boroughs[row] = boroughIds[batch.boroughs[row]];
+        }
+
+        int words = (size + 63) >>> 6;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            buffer.asIntBuffer().get(batch.values[field], 0, size);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+
+            buffer.asLongBuffer().get(batch.nulls[field], 0, words);
+            buffer.position(buffer.position() + words * Long.BYTES);
+        }
+        return batch;
+    }
+
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        loadAllFields();
+        buffer.asIntBuffer().put(dates, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+
+        buffer.asIntBuffer().put(boroughs, 0, size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+
+        int words = (size + 63) >>> 6;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            buffer.asIntBuffer().put(values[field], 0, size);
+            buffer.position(buffer.position() + size * Integer.BYTES);
+
+            buffer.asLongBuffer().put(nulls[field], 0, words);
+            buffer.position(buffer.position() + words * Long.BYTES);
+        }
+    }
+
+    @Override
+    public long getByteSize() {
+        return getByteSize(size);
+    }
+
+    /**
+     * @param size a number of rows
+     * @return the number of bytes that writeTo() needs for that many rows
+     */
+    public static long getByteSize(int size) {
+        long words = (size + 63) >>> 6;
+        return (2L + FIELD_COUNT) * size * Integer.BYTES + FIELD_COUNT * words * Long.BYTES;
+    }
+
+    /**
+     * Adds a new row to the end of the batch. All of its fields start as null.
+     *
+     * @param epochDay  the date of the row, as a count of days since 1970-01-01
+     * @param boroughId the id of the borough of the row
+     * @return the index of the new row
+     */
+    public int addRow(int epochDay, int boroughId) {
+        if (size == dates.length) {
+            grow();
+        } else if (arraysShared) {
+            copyArrays(dates.length);
+        }
+
+        int row = size++;
+        dates[row] = epochDay;
+        boroughs[row] = boroughId;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (nulls[field] != null) {
+                nulls[field][row >>> 6] |= 1L << row;
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Sets where the line of a row starts in the source, so that the fields
+     * that were not loaded can be read later. Ignored if every field is
+     * loaded.
+     *
+     * @param row       the index of the row
+     * @param lineStart the position of the row's line in the source
+     */
+    public void setLineStart(int row, long lineStart) {
+        if (lineStarts != null) {
+            lineStarts[row] = lineStart;
+        }
+    }
+
+    /**
+     * Sets where the fields that were not loaded are read from.
+     *
+     * @param source the source of the rows' lines
+     */
+    public void setSource(ColumnSource source) {
+        this.source = source;
+    }
+
+    /**
+     * @param field the index of a DataField
+     * @return true if the values of the field are held in the batch, rather
+     *         than still to be read from its source
+     */
+    public boolean isLoaded(int field) {
+        return values[field] != null;
+    }
+
+    /**
+     * Reads every field that has not been loaded yet from the source.
+     *
+     * @throws UncheckedIOException if the source could not be read
+     */
+    public void loadAllFields() {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (!isLoaded(field)) {
+                loadField(field);
+            }
+        }
+    }
+
+    /**
+     * Reads the values of a field that has not been loaded from the source.
+     * Once every field is loaded, the source and line positions are dropped.
+     *
+     * @throws IllegalStateException if the batch has no source
+     * @throws UncheckedIOException  if the source could not be read
+     */
+    private void loadField(int field) {
+        if (source == null && size > 0) {
+            throw new IllegalStateException("No source to load " + DataField.values()[field] + " from");
+        }
+
+        // Every value starts as null until the source sets it
+        int capacity = dates.length;
+        long[] fieldNulls = new long[(capacity + 63) >>> 6];
+        Arrays.fill(fieldNulls, -1L);
+        values[field] = new int[capacity];
+        nulls[field] = fieldNulls;
+        try {
+            if (size > 0) {
+                source.readField(field, lineStarts, size, this);
+            }
+        } catch (IOException e) {
+            values[field] = null;
+            nulls[field] = null;
+            throw new UncheckedIOException("Could not load " + DataField.values()[field], e);
+        }
+
+        for (int other = 0; other < FIELD_COUNT; other++) {
+            if (!isLoaded(other)) {
+                return;
+            }
+        }
+        source = null;
+        lineStarts = null;
+    }
+
+    /**
+     * Adds all the rows of another batch to the end of this batch.
+     *
+     * @param other the batch whose rows are added
+     */
+    public void append(ColumnBatch other) {
+        append(other, 0, other.size);
+    }
+
+    /**
+     * Adds some of the rows of another batch to the end of this batch.
+     *
+     * @param other the batch whose rows are added
+     * @param from  the index of the first row to add
+     * @param to    the index just after the last row to add
+     */
+    public void append(ColumnBatch other, int from, int to) {
+        // Both batches must hold the same fields for their columns to line up
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (isLoaded(field) != other.isLoaded(field)) {
+                loadAllFields();
+                other.loadAllFields();
+                break;
+            }
+        }
+
+        int offset = size;
+        int count = to - from;
+        int newSize = size + count;
+        if (arraysShared) {
+            copyArrays(Math.max(dates.length, newSize));
+        }
+        while (dates.length < newSize) {
+            grow();
+        }
+
+        System.arraycopy(other.dates, from, dates, offset, count);
+        System.arraycopy(other.boroughs, from, boroughs, offset, count);
+        if (lineStarts != null) {
+            System.arraycopy(other.lineStarts, from, lineStarts, offset, count);
+            if (source == null) {
+                source = other.source;
+            }
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (isLoaded(field)) {
+                System.arraycopy(other.values[field], from, values[field], offset, count);
+            }
+        }
+        size = newSize;
+
+        for (int row = 0; row < count; row++) {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (isLoaded(field)) {
+                    setNull(offset + row, field, other.isNull(from + row, field));
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges batches that are each sorted by date into one batch sorted by
+     * date, without sorting the rows again (a k-way merge). Rows with the same
+     * date keep their order, with the rows of earlier batches first, so the
+     * result is the same as appending the batches and sorting them with
+     * sortedByDate().
+     *
+     * The batch whose next row is the oldest is found with a heap, and all its
+     * rows up to the next row of any other batch are copied at once. When the
+     * batches cover different dates, e.g. one file for each month, this copies
+     * each batch in a single step.
+     *
+     * @param runs the batches to merge, each sorted by date (oldest first)
+     * @return a new batch holding the rows of every batch, sorted by date
+     */
+    public static ColumnBatch mergeByDate(List<ColumnBatch> runs) {
+        int total = 0;
+        for (ColumnBatch run : runs) {
+            run.loadAllFields();
+            total += run.size;
+        }
+
+        // The runs that have rows left, by the date of their next row then by
+        // their position in the list
+        int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(
+                Comparator.comparingInt((Integer r) -> runs.get(r).dates[positions[r]]).thenComparingInt(r -> r));
+        for (int r = 0; r < runs.size(); r++) {
+            if (runs.get(r).size > 0) {
+                heads.add(r);
+            }
+        }
+
+        ColumnBatch merged = new ColumnBatch(total);
+        while (!heads.isEmpty()) {
+            int r = heads.poll();
+            ColumnBatch run = runs.get(r);
+            int from = positions[r];
+
+            // Take the rows before the next row of the other runs (and those on
+            // the same day, if this run comes first in the list)
+            int end = run.size;
+            Integer next = heads.peek();
+            if (next != null) {
+                int nextDay = runs.get(next).dates[positions[next]];
+                end = run.findFirstRowFrom(r < next ? nextDay + 1L : nextDay, from);
+            }
+
+            merged.append(run, from, end);
+            positions[r] = end;
+            if (end < run.size) {
+                heads.add(r);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @param epochDay a date, as an epoch day
+     * @param from     the first row to search from (the rows must be sorted by
+     *                 date from there on)
+     * @return the first row from there on dated on or after the date (size()
+     *         if there is none)
+     */
+    private int findFirstRowFrom(long epochDay, int from) {
+        int low = from;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (dates[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a batch holding the rows of this batch followed by the rows of
+     * another, leaving this batch as it is. If the arrays of this batch have
+     * room for the new rows, the new batch uses the same arrays and only the
+     * new rows are copied, so the time taken does not depend on the size of
+     * this batch. This batch only reads its own rows, so it can still be read
+     * (from any thread) while the new batch is used.
+     *
+     * The room is only shared once: rows added to this batch afterwards, or
+     * another call to this method, copy the arrays first. The values of the
+     * existing rows are shared, so they must not be changed afterwards.
+     *
+     * @param other the rows to add
+     * @return a new batch holding the rows of both batches
+     */
+    public synchronized ColumnBatch withRowsAdded(ColumnBatch other) {
+        loadAllFields();
+        other.loadAllFields();
+
+        ColumnBatch batch = new ColumnBatch(0);
+        batch.size = size;
+        batch.dates = dates;
+        batch.boroughs = boroughs;
+        batch.values = values.clone();
+        batch.nulls = nulls.clone();
+        if (arraysShared) {
+            batch.copyArrays(dates.length);
+        }
+        arraysShared = true;
+
+        batch.append(other);
+        return batch;
+    }
+
+    /**
+     * Returns a batch in which some rows of this batch are replaced by newer
+     * versions of them, e.g. revised figures for an earlier day, leaving this
+     * batch as it is. The new batch uses the same arrays as this one, except
+     * for the columns of the fields whose values change, which are copied
+     * before the new values are written. Room for more rows is shared in the
+     * same way as by withRowsAdded().
+     *
+     * @param rows         the indexes of the rows to replace
+     * @param replacements the new values of each row, in the same order, with
+     *                     the same date and borough as the row they replace
+     * @return a new batch holding the rows with the new values
+     */
+    public synchronized ColumnBatch withRowsRevised(int[] rows, ColumnData replacements) {
+        loadAllFields();
+
+        ColumnBatch batch = new ColumnBatch(0);
+        batch.size = size;
+        batch.dates = dates;
+        batch.boroughs = boroughs;
+        batch.values = values.clone();
+        batch.nulls = nulls.clone();
+        batch.arraysShared = arraysShared;
+        arraysShared = true;
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            for (int i = 0; i < rows.length; i++) {
+                boolean isNull = replacements.isNull(i, field);
+                if (isNull != isNull(rows[i], field)
+                        || !isNull && replacements.getValue(i, field) != getValue(rows[i], field)) {
+                    // Copy the column before the first change to it
+                    if (batch.values[field] == values[field]) {
+                        batch.values[field] = values[field].clone();
+                        batch.nulls[field] = nulls[field].clone();
+                    }
+                    batch.values[field][rows[i]] = replacements.getValue(i, field);
+                    batch.setNull(rows[i], field, isNull);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Returns a copy of the batch in which no two rows have the same date and
+     * borough. Where rows share a key, the later rows are revisions of the
+     * first: the row is kept in the place of the first one, with the values
+     * of the last one. The fields that have not been loaded are only read if
+     * there are such rows.
+     *
+     * @return a batch with one row for each key, or this batch if the keys
+     *         are already unique
+     */
+    public ColumnBatch withoutDuplicateKeys() {
+        RowKeyIndex index = new RowKeyIndex(size);
+        int[] firstRows = new int[size];
+        boolean duplicates = false;
+        for (int row = 0; row < size; row++) {
+            int first = index.putIfAbsent(dates[row], boroughs[row], row);
+            firstRows[row] = first < 0 ? row : first;
+            duplicates |= first >= 0;
+        }
+        if (!duplicates) {
+            return this;
+        }
+
+        loadAllFields();
+        ColumnBatch batch = new ColumnBatch(index.size());
+        int[] newRows = new int[size];
+        for (int row = 0; row < size; row++) {
+            if (firstRows[row] == row) {
+                newRows[row] = batch.addRow(dates[row], boroughs[row]);
+            }
+            batch.setValues(newRows[firstRows[row]], this, row);
+        }
+        return batch;
+    }
+
+    /**
+     * @param rows the indexes of the rows to copy
+     * @return a new batch holding the given rows, in the given order
+     */
+    public ColumnBatch select(int[] rows) {
+        return reordered(rows);
+    }
+
+    /**
+     * Returns a copy of the batch with its rows sorted by date, oldest first.
+     * Rows with the same date keep their order, as with a stable sort.
+     *
+     * Dates span a small number of days compared to the number of rows, so
+     * the rows are placed with a counting sort instead of comparing them.
+     *
+     * @return a new batch with the same rows, sorted by date
+     */
+    public ColumnBatch sortedByDate() {
+        int[] order = new int[size];
+        if (size > 0) {
+            int minDay = Integer.MAX_VALUE;
+            int maxDay = Integer.MIN_VALUE;
+            for (int row = 0; row < size; row++) {
+                minDay = Math.min(minDay, dates[row]);
+                maxDay = Math.max(maxDay, dates[row]);
+            }
+
+            long dayRange = (long) maxDay - minDay + 1;
+            if (dayRange <= 4L * size + 1024) {
+                countingSort(order, minDay, (int) dayRange);
+            } else {
+                // Too many distinct days for counting, so sort (date, row) pairs
+                long[] keys = new long[size];
+                for (int row = 0; row < size; row++) {
+                    keys[row] = ((long) dates[row] << 32) | row;
+                }
+                Arrays.sort(keys);
+                for (int i = 0; i < size; i++) {
+                    order[i] = (int) keys[i];
+                }
+            }
+        }
+        return reordered(order);
+    }
+
+    /**
+     * Fills in the order of the rows when sorted by date, by counting the rows
+     * on each day.
+     */
+    private void countingSort(int[] order, int minDay, int dayRange) {
+        int[] starts = new int[dayRange + 1];
+        for (int row = 0; row < size; row++) {
+            starts[dates[row] - minDay + 1]++;
+        }
+        for (int day = 1; day <= dayRange; day++) {
+            starts[day] += starts[day - 1];
+        }
+        for (int row = 0; row < size; row++) {
+            order[starts[dates[row] - minDay]++] = row;
+        }
+    }
+
+    /**
+     * @param order the index of the row to place at each position
+     * @return a new batch holding the rows in the given order
+     */
+    private ColumnBatch reordered(int[] order) {
+        ColumnBatch batch = new ColumnBatch(order.length, getLoadedFields());
+        batch.source = source;
+        for (int row : order) {
+            int newRow = batch.addRow(dates[row], boroughs[row]);
+            if (lineStarts != null) {
+                batch.setLineStart(newRow, lineStarts[row]);
+            }
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if (isLoaded(field) && !isNull(row, field)) {
+                    batch.setValue(newRow, field, values[field][row]);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * @return the fields whose values are held in the batch
+     */
+    private Set<DataField> getLoadedFields() {
+        Set<DataField> fields = EnumSet.noneOf(DataField.class);
+        for (DataField field : DataField.values()) {
+            if (isLoaded(field.ordinal())) {
+                fields.add(field);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Sets the value of a field in a row, marking it as not null.
+     */
+    public void setValue(int row, int field, int value) {
+        values[field][row] = value;
+        nulls[field][row >>> 6] &= ~(1L << row);
+    }
+
+    /**
+     * Sets every field of a row to the values of a row of other rows,
+     * including which of them are null.
+     *
+     * @param row       the index of the row to set
+     * @param source    the rows to copy from, which must hold every field
+     * @param sourceRow the index of the row to copy
+     */
+    public void setValues(int row, ColumnData source, int sourceRow) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            values[field][row] = source.getValue(sourceRow, field);
+            setNull(row, field, source.isNull(sourceRow, field));
+        }
+    }
+
+    /**
+     * Marks whether the value of a field in a row is null.
+     */
+    private void setNull(int row, int field, boolean isNull) {
+        if (isNull) {
+            nulls[field][row >>> 6] |= 1L << row;
+        } else {
+            nulls[field][row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * @return the number of rows in the batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the date of the row, as a count of days since 1970-01-01
+     */
+    public int getEpochDay(int row) {
+        return dates[row];
+    }
+
+    /**
+     * @return the id of the borough of the row
+     */
+    public int getBoroughId(int row) {
+        return boroughs[row];
+    }
+
+    /**
+     * @return true if the field has no value in the row
+     */
+    public boolean isNull(int row, int field) {
+        long[] fieldNulls = nulls[field];
+        if (fieldNulls == null) {
+            loadField(field);
+            fieldNulls = nulls[field];
+        }
+        return (fieldNulls[row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * @return the value of the field in the row (only meaningful if not null)
+     */
+    public int getValue(int row, int field) {
+        int[] fieldValues = values[field];
+        if (fieldValues == null) {
+            loadField(field);
+            fieldValues = values[field];
+        }
+        return fieldValues[row];
+    }
+
+    /**
+     * @return a CovidData record holding the values of the row
+     */
+    public CovidData getRecord(int row) {
+        loadAllFields();
+        int[] rowValues = new int[FIELD_COUNT];
+        int nullMask = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            rowValues[field] = values[field][row];
+            if (isNull(row, field)) {
+                nullMask |= 1 << field;
+            }
+        }
+        return new CovidData(dates[row], boroughs[row], rowValues, nullMask);
+    }
+
+    /**
+     * Creates a CovidData record for every row, in order, and adds them to the
+     * given list.
+     *
+     * @param records the list to add the records to
+     */
+    public void addRecordsTo(ArrayList<CovidData> records) {
+        loadAllFields();
+        int[] rowValues = new int[FIELD_COUNT];
+
+        records.ensureCapacity(records.size() + size);
+        for (int row = 0; row < size; row++) {
+            int nullMask = 0;
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                rowValues[field] = values[field][row];
+                if (isNull(row, field)) {
+                    nullMask |= 1 << field;
+                }
+            }
+
+            records.add(new CovidData(dates[row], boroughs[row], rowValues, nullMask));
+        }
+    }
+
+    /**
+     * Doubles the capacity of every column.
+     */
+    private void grow() {
+        copyArrays(dates.length * 2);
+    }
+
+    /**
+     * Moves every column to new arrays, which are no longer shared with any
+     * other batch.
+     *
+     * @param capacity the number of rows that the new arrays have room for
+     */
+    private void copyArrays(int capacity) {
+        arraysShared = false;
+        dates = Arrays.copyOf(dates, capacity);
+        boroughs = Arrays.copyOf(boroughs, capacity);
+        if (lineStarts != null) {
+            lineStarts = Arrays.copyOf(lineStarts, capacity);
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (isLoaded(field)) {
+                values[field] = Arrays.copyOf(values[field], capacity);
+                nulls[field] = Arrays.copyOf(nulls[field], (capacity + 63) >>> 6);
+            }
+        }
+    }
+}
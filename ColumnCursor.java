@@ -0,0 +1,120 @@
+/**
+ * Walks over rows of a ColumnStore, newest first, without creating a
+ * CovidData object for each row. Call next() to move to each row, then read
+ * the columns of the current row:
+ *
+ * <pre>
+ * ColumnCursor cursor = dataset.getCursor(fromDate, toDate);
+ * while (cursor.next()) {
+ *     if (!cursor.isNull(DataField.NEW_DEATHS)) {
+ *         deaths += cursor.getInt(DataField.NEW_DEATHS);
+ *     }
+ * }
+ * </pre>
+ *
+ * @version 2026.10.18
+ */
+public class ColumnCursor {
+    private final ColumnStore store;
+
+    // The indexes of the rows to visit, or null to visit consecutive rows
+    private final int[] rowIndexes;
+    private final int first;
+    private final int end;
+
+    // The current position (starts just past the end, as rows are walked backwards)
+    private int position;
+    private int row;
+
+    /**
+     * Creates a cursor over consecutive rows of a store.
+     *
+     * @param store    the store to walk over
+     * @param firstRow the first row that may be visited
+     * @param endRow   the row just after the last row that may be visited
+     */
+    ColumnCursor(ColumnStore store, int firstRow, int endRow) {
+        this(store, null, firstRow, endRow);
+    }
+
+    /**
+     * Creates a cursor over some of the rows of a store.
+     *
+     * @param store      the store to walk over
+     * @param rowIndexes the indexes of the rows, in increasing order, or null
+     *                   for consecutive rows
+     * @param first      the position of the first row that may be visited
+     * @param end        the position just after the last row that may be visited
+     */
+    ColumnCursor(ColumnStore store, int[] rowIndexes, int first, int end) {
+        this.store = store;
+        this.rowIndexes = rowIndexes;
+        this.first = first;
+        this.end = end;
+        this.position = end;
+    }
+
+    /**
+     * Moves to the next row.
+     *
+     * @return true if there is a next row, false if every row has been visited
+     */
+    public boolean next() {
+        if (position <= first) {
+            return false;
+        }
+        position--;
+        row = rowIndexes == null ? position : rowIndexes[position];
+        return true;
+    }
+
+    /**
+     * @return the index of the current row in the store
+     */
+    public int getRow() {
+        return row;
+    }
+
+    /**
+     * @return the number of rows the cursor visits in total
+     */
+    public int size() {
+        return end - first;
+    }
+
+    /**
+     * @return the date of the current row, as the number of days since
+     *         1970-01-01
+     */
+    public int getEpochDay() {
+        return store.getEpochDay(row);
+    }
+
+    /**
+     * @return the id of the borough of the current row
+     */
+    public int getBoroughId() {
+        return store.getBoroughId(row);
+    }
+
+    /**
+     * @return true if the field has no value in the current row
+     */
+    public boolean isNull(DataField field) {
+        return store.isNull(row, field);
+    }
+
+    /**
+     * @return the value of the field in the current row (0 if it is null)
+     */
+    public int getInt(DataField field) {
+        return store.getInt(row, field);
+    }
+
+    /**
+     * @return a new CovidData record holding the values of the current row
+     */
+    public CovidData getRecord() {
+        return store.getRecord(row);
+    }
+}
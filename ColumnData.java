@@ -0,0 +1,55 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Read access to rows stored one primitive column per field, wherever the
+ * columns are held: in arrays on the heap (ColumnBatch) or in memory outside
+ * the heap (OffHeapColumnBatch). A ColumnStore and every query over it only
+ * use this interface, so they work the same over either.
+ *
+ * @version 2026.10.18
+ */
+public interface ColumnData {
+    /**
+     * @return the number of rows
+     */
+    int size();
+
+    /**
+     * @return the date of the row, as a count of days since 1970-01-01
+     */
+    int getEpochDay(int row);
+
+    /**
+     * @return the id of the borough of the row
+     */
+    int getBoroughId(int row);
+
+    /**
+     * @return true if the field has no value in the row
+     */
+    boolean isNull(int row, int field);
+
+    /**
+     * @return the value of the field in the row (only meaningful if not null)
+     */
+    int getValue(int row, int field);
+
+    /**
+     * @return a CovidData record holding the values of the row
+     */
+    CovidData getRecord(int row);
+
+    /**
+     * @return the number of bytes that writeTo() needs
+     */
+    long getByteSize();
+
+    /**
+     * Writes the columns one after the other: the dates, the borough ids, then
+     * the values and null bitmap of each field.
+     *
+     * @param buffer the buffer to write to, which must have getByteSize() bytes
+     *               remaining
+     */
+    void writeTo(ByteBuffer buffer);
+}
@@ -0,0 +1,86 @@
+/**
+ * A condition on the value of one field, used to filter the rows of a
+ * DatasetQuery. A row only matches if the field is not null and its value is
+ * between the predicate's bounds (inclusive).
+ *
+ * @version 2026.10.18
+ */
+public final class ColumnPredicate {
+    private final DataField field;
+    private final long min;
+    private final long max;
+
+    private ColumnPredicate(DataField field, long min, long max) {
+        this.field = field;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * @return a predicate matching rows where the field has any value
+     */
+    public static ColumnPredicate notNull(DataField field) {
+        return new ColumnPredicate(field, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return a predicate matching rows where the field is at least the value
+     */
+    public static ColumnPredicate atLeast(DataField field, int value) {
+        return new ColumnPredicate(field, value, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return a predicate matching rows where the field is at most the value
+     */
+    public static ColumnPredicate atMost(DataField field, int value) {
+        return new ColumnPredicate(field, Long.MIN_VALUE, value);
+    }
+
+    /**
+     * @return a predicate matching rows where the field is between the two
+     *         values (inclusive)
+     */
+    public static ColumnPredicate between(DataField field, int min, int max) {
+        return new ColumnPredicate(field, min, max);
+    }
+
+    /**
+     * @return the field that the predicate tests
+     */
+    public DataField getField() {
+        return field;
+    }
+
+    /**
+     * @param store the store holding the row
+     * @param row   the index of the row in the store
+     * @return true if the row matches the predicate
+     */
+    public boolean matches(ColumnStore store, int row) {
+        if (store.isNull(row, field)) {
+            return false;
+        }
+        int value = store.getInt(row, field);
+        return value >= min && value <= max;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof ColumnPredicate)) {
+            return false;
+        }
+        ColumnPredicate predicate = (ColumnPredicate) other;
+        return field == predicate.field && min == predicate.min && max == predicate.max;
+    }
+
+    @Override
+    public int hashCode() {
+        return (field.hashCode() * 31 + Long.hashCode(min)) * 31 + Long.hashCode(max);
+    }
+
+    @Override
+    public String toString() {
+        return min + " <= " + field + " <= " + max;
+    }
+}
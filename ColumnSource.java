@@ -0,0 +1,21 @@
+import java.io.IOException;
+
+/**
+ * Where the fields of a ColumnBatch that were not loaded with its rows are
+ * read from, e.g. the csv file the rows were parsed from.
+ *
+ * @version 2026.10.18
+ */
+public interface ColumnSource {
+    /**
+     * Reads the values of one field for every row of a batch, setting them in
+     * the batch with setValue(). Values that are missing are left as null.
+     *
+     * @param field      the index of the DataField to read
+     * @param lineStarts the position of each row's line in the source
+     * @param size       the number of rows to read
+     * @param batch      the batch to set the values in
+     * @throws IOException if the source could not be read
+     */
+    void readField(int field, long[] lineStarts, int size, ColumnBatch batch) throws IOException;
+}
@@ -0,0 +1,383 @@
+/**
+ * Stores the dataset one primitive column per field rather than as a list of
+ * CovidData objects: the dates, the borough ids, the ten DataFields and a null
+ * bitmap for each field. Scanning a column reads consecutive ints, and no
+ * object is created for a row unless getRecord() is called.
+ *
+ * Rows are stored sorted by date, oldest first. The Dataset presents them
+ * newest first, so cursors walk the rows backwards.
+ *
+ * The columns may be held on the heap or outside it (see ColumnData); the
+ * store and its indexes work the same over either.
+ *
+ * A store is never changed. Newer rows are added with withRowsAdded(), and
+ * revised values of existing rows with withRowsRevised(), which return a new
+ * store that reuses the indexes of this one. Each row is found from its date
+ * and borough with a hash index (see findRows()).
+ *
+ * @version 2026.10.18
+ */
+public class ColumnStore {
+    private final ColumnData rows;
+
+    // The rows of each borough, indexed by borough id
+    private final BoroughPartition[] partitions;
+
+    // Partition returned for a borough without rows, shared by every lookup
+    private final BoroughPartition emptyPartition;
+
+    // Row of each date and borough, built when first needed (guarded by this)
+    private RowKeyIndex keyIndex = null;
+
+    /**
+     * Creates a store of the given rows and splits them into one partition per
+     * borough.
+     *
+     * @param rows the rows of the store, which must be sorted by date (oldest
+     *             first)
+     */
+    public ColumnStore(ColumnData rows) {
+        this.rows = rows;
+        this.partitions = createPartitions();
+        this.emptyPartition = new BoroughPartition(this, -1, new int[0]);
+    }
+
+    /**
+     * Creates a store holding the rows of an older store followed by newer
+     * rows, extending the partitions of the older store with the new rows.
+     *
+     * @param rows     the rows of the older store followed by the new rows
+     * @param previous the older store
+     */
+    private ColumnStore(ColumnData rows, ColumnStore previous) {
+        this.rows = rows;
+
+        int oldSize = previous.size();
+        keyIndex = previous.takeKeyIndex();
+        if (keyIndex != null) {
+            for (int row = oldSize; row < rows.size(); row++) {
+                keyIndex.putIfAbsent(rows.getEpochDay(row), rows.getBoroughId(row), row);
+            }
+        }
+
+        int boroughCount = previous.partitions.length;
+        for (int row = oldSize; row < rows.size(); row++) {
+            boroughCount = Math.max(boroughCount, rows.getBoroughId(row) + 1);
+        }
+
+        int[] counts = new int[boroughCount];
+        for (int row = oldSize; row < rows.size(); row++) {
+            counts[rows.getBoroughId(row)]++;
+        }
+
+        int[][] addedRows = new int[boroughCount][];
+        for (int id = 0; id < boroughCount; id++) {
+            addedRows[id] = new int[counts[id]];
+            counts[id] = 0;
+        }
+        for (int row = oldSize; row < rows.size(); row++) {
+            int id = rows.getBoroughId(row);
+            addedRows[id][counts[id]++] = row;
+        }
+
+        partitions = new BoroughPartition[boroughCount];
+        for (int id = 0; id < boroughCount; id++) {
+            partitions[id] = id < previous.partitions.length
+                    ? previous.partitions[id].withRowsAdded(this, addedRows[id])
+                    : new BoroughPartition(this, id, addedRows[id]);
+        }
+        emptyPartition = new BoroughPartition(this, -1, new int[0]);
+    }
+
+    /**
+     * Creates a store holding the rows of an older store, with new values in
+     * some of them, and revises the partitions of the older store.
+     *
+     * @param rows        the rows of the older store with the new values
+     * @param previous    the older store
+     * @param revisedRows the indexes of the rows with new values
+     */
+    private ColumnStore(ColumnData rows, ColumnStore previous, int[] revisedRows) {
+        this.rows = rows;
+
+        // Revising a row does not change its date, borough or position
+        keyIndex = previous.takeKeyIndex();
+
+        int boroughCount = previous.partitions.length;
+        int[] counts = new int[boroughCount];
+        for (int row : revisedRows) {
+            counts[rows.getBoroughId(row)]++;
+        }
+
+        int[][] boroughRevisedRows = new int[boroughCount][];
+        for (int id = 0; id < boroughCount; id++) {
+            boroughRevisedRows[id] = new int[counts[id]];
+            counts[id] = 0;
+        }
+        for (int row : revisedRows) {
+            int id = rows.getBoroughId(row);
+            boroughRevisedRows[id][counts[id]++] = row;
+        }
+
+        partitions = new BoroughPartition[boroughCount];
+        for (int id = 0; id < boroughCount; id++) {
+            partitions[id] = previous.partitions[id].withRowsRevised(this, boroughRevisedRows[id]);
+        }
+        emptyPartition = new BoroughPartition(this, -1, new int[0]);
+    }
+
+    /**
+     * Finds the row of the store with the same date and borough as each of the
+     * given rows, with one lookup in a hash index per row. The index is built
+     * the first time it is needed, and taken over by the store returned by
+     * withRowsAdded() or withRowsRevised() rather than built again.
+     *
+     * @param keys the rows whose dates and boroughs are looked up
+     * @return for each of the rows, the index of the row of the store with the
+     *         same date and borough, or -1 if there is none
+     */
+    public synchronized int[] findRows(ColumnData keys) {
+        if (keyIndex == null) {
+            keyIndex = RowKeyIndex.of(rows);
+        }
+
+        int[] found = new int[keys.size()];
+        for (int row = 0; row < keys.size(); row++) {
+            found[row] = keyIndex.find(keys.getEpochDay(row), keys.getBoroughId(row));
+        }
+        return found;
+    }
+
+    /**
+     * Hands the key index over to a newer store. This store builds it again if
+     * it is needed afterwards.
+     *
+     * @return the key index, or null if it has not been built
+     */
+    private synchronized RowKeyIndex takeKeyIndex() {
+        RowKeyIndex index = keyIndex;
+        keyIndex = null;
+        return index;
+    }
+
+    /**
+     * Checks whether rows can be added to the store with withRowsAdded(): the
+     * store must be held on the heap, and the rows must not be older than the
+     * rows already in it.
+     *
+     * @param added the rows to add, sorted by date (oldest first)
+     * @return true if withRowsAdded() can add the rows
+     */
+    public boolean canAddRows(ColumnData added) {
+        return rows instanceof ColumnBatch
+                && (size() == 0 || added.size() == 0 || added.getEpochDay(0) >= getLastEpochDay());
+    }
+
+    /**
+     * Returns a store holding the rows of this store followed by newer rows.
+     * The rows of this store are not copied, and its partitions and their
+     * indexes are extended rather than built again, so the time taken depends
+     * on the number of new rows rather than the size of the store. This store
+     * is left as it was.
+     *
+     * @param added the rows to add, sorted by date (oldest first)
+     * @return a new store holding the rows of both
+     * @throws IllegalArgumentException if the rows cannot be added (see
+     *                                  canAddRows())
+     */
+    public ColumnStore withRowsAdded(ColumnBatch added) {
+        if (!canAddRows(added)) {
+            throw new IllegalArgumentException("Rows older than the store, or a store not held on the heap");
+        }
+        return new ColumnStore(((ColumnBatch) rows).withRowsAdded(added), this);
+    }
+
+    /**
+     * Returns a store in which some rows of this store have revised values,
+     * e.g. corrected figures republished for an earlier day. The rows stay in
+     * the same places, only the columns of the fields that changed are copied,
+     * and the indexes of each borough are only worked out again from its first
+     * revised row (see BoroughPartition.withRowsRevised()). This store is left
+     * as it was.
+     *
+     * @param revisedRows  the indexes of the rows to revise
+     * @param replacements the new values of each row, in the same order, with
+     *                     the same date and borough as the row they replace
+     * @return a new store holding the revised rows
+     * @throws IllegalArgumentException if the store is not held on the heap
+     */
+    public ColumnStore withRowsRevised(int[] revisedRows, ColumnData replacements) {
+        if (!(rows instanceof ColumnBatch)) {
+            throw new IllegalArgumentException("Only a store held on the heap can be revised");
+        }
+        return new ColumnStore(((ColumnBatch) rows).withRowsRevised(revisedRows, replacements), this, revisedRows);
+    }
+
+    /**
+     * Splits the rows by borough, keeping them in date order within each
+     * borough. Every London borough gets a partition, even if it has no rows.
+     *
+     * @return the partition of each borough, indexed by borough id
+     */
+    private BoroughPartition[] createPartitions() {
+        int boroughCount = BoroughDictionary.LONDON_BOROUGHS.length;
+        for (int row = 0; row < rows.size(); row++) {
+            boroughCount = Math.max(boroughCount, rows.getBoroughId(row) + 1);
+        }
+
+        int[] counts = new int[boroughCount];
+        for (int row = 0; row < rows.size(); row++) {
+            counts[rows.getBoroughId(row)]++;
+        }
+
+        int[][] boroughRows = new int[boroughCount][];
+        for (int id = 0; id < boroughCount; id++) {
+            boroughRows[id] = new int[counts[id]];
+            counts[id] = 0;
+        }
+        for (int row = 0; row < rows.size(); row++) {
+            int id = rows.getBoroughId(row);
+            boroughRows[id][counts[id]++] = row;
+        }
+
+        BoroughPartition[] result = new BoroughPartition[boroughCount];
+        for (int id = 0; id < boroughCount; id++) {
+            result[id] = new BoroughPartition(this, id, boroughRows[id]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of rows in the store
+     */
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @return the date of the row, as the number of days since 1970-01-01
+     */
+    public int getEpochDay(int row) {
+        return rows.getEpochDay(row);
+    }
+
+    /**
+     * @return the id of the borough of the row in the BoroughDictionary
+     */
+    public int getBoroughId(int row) {
+        return rows.getBoroughId(row);
+    }
+
+    /**
+     * @return true if the field has no value in the row
+     */
+    public boolean isNull(int row, DataField field) {
+        return rows.isNull(row, field.ordinal());
+    }
+
+    /**
+     * @return the value of the field in the row (0 if it is null)
+     */
+    public int getInt(int row, DataField field) {
+        return rows.getValue(row, field.ordinal());
+    }
+
+    /**
+     * @return a new CovidData record holding the values of the row
+     */
+    public CovidData getRecord(int row) {
+        return rows.getRecord(row);
+    }
+
+    /**
+     * @return the earliest date in the store, as the number of days since
+     *         1970-01-01 (the store must not be empty)
+     */
+    public int getFirstEpochDay() {
+        return rows.getEpochDay(0);
+    }
+
+    /**
+     * @return the latest date in the store, as the number of days since
+     *         1970-01-01 (the store must not be empty)
+     */
+    public int getLastEpochDay() {
+        return rows.getEpochDay(rows.size() - 1);
+    }
+
+    /**
+     * @return a cursor over every row, newest first
+     */
+    public ColumnCursor cursor() {
+        return new ColumnCursor(this, 0, size());
+    }
+
+    /**
+     * Returns a cursor over the rows in a date range. As the rows are sorted by
+     * date, the range is found with two binary searches and the cursor only
+     * visits the rows inside it.
+     *
+     * @param fromDay the first date to include, as an epoch day
+     * @param toDay   the last date to include, as an epoch day
+     * @return a cursor over the rows between the two dates (inclusive), newest
+     *         first
+     */
+    public ColumnCursor cursor(int fromDay, int toDay) {
+        int firstRow = findFirstRowFrom(fromDay);
+        int endRow = Math.max(firstRow, findFirstRowAfter(toDay));
+        return new ColumnCursor(this, firstRow, endRow);
+    }
+
+    /**
+     * @param epochDay a date, as an epoch day
+     * @return the first row dated on or after the date (size() if there is none)
+     */
+    public int findFirstRowFrom(int epochDay) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (rows.getEpochDay(middle) < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param epochDay a date, as an epoch day
+     * @return the first row dated after the date (size() if there is none)
+     */
+    public int findFirstRowAfter(int epochDay) {
+        return epochDay == Integer.MAX_VALUE ? rows.size() : findFirstRowFrom(epochDay + 1);
+    }
+
+    /**
+     * @return the number of borough partitions (at least one for each London
+     *         borough)
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * @param boroughId the id of a borough in the BoroughDictionary
+     * @return the rows of the borough (an empty partition, shared by every
+     *         borough without rows, if the borough has no rows)
+     */
+    public BoroughPartition getPartition(int boroughId) {
+        if (boroughId < 0 || boroughId >= partitions.length) {
+            return emptyPartition;
+        }
+        return partitions[boroughId];
+    }
+
+    /**
+     * @return the rows of the store, for saving in a snapshot
+     */
+    public ColumnData getRows() {
+        return rows;
+    }
+}
@@ -0,0 +1,411 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Rows stored one compressed column per field on the heap. Values are decoded
+ * on the fly as they are read, so scans and queries work the same as over a
+ * ColumnBatch while the columns take up a fraction of the memory.
+ *
+ * Each column is encoded in the way that suits its values:
+ * <ul>
+ * <li>Dates are run-length encoded, as the rows are sorted by date and every
+ * borough has a row on each day.</li>
+ * <li>Borough ids and most fields are packed into bytes or shorts as the
+ * difference from the smallest value (frame of reference), e.g. the mobility
+ * percentages fit in a byte.</li>
+ * <li>Running totals, such as total cases, are stored as the difference from
+ * the smallest value of the same borough in each block of rows (delta), as
+ * they only grow by the daily counts.</li>
+ * </ul>
+ * Each field uses whichever of the last two encodings is smaller.
+ *
+ * The batch cannot be changed once created.
+ *
+ * @version 2026.10.18
+ */
+public class CompressedColumnBatch implements ColumnData {
+    private static final int FIELD_COUNT = DataField.values().length;
+
+    private final int size;
+    private final RunLengthColumn dates;
+    private final PackedColumn boroughs;
+    private final IntColumn[] values;
+
+    // One bit per row for each field, set when the value is null
+    private final long[][] nulls;
+
+    /**
+     * Compresses the columns of the given rows.
+     *
+     * @param rows the rows to compress
+     */
+    private CompressedColumnBatch(ColumnData rows) {
+        size = rows.size();
+        int[] column = new int[size];
+
+        for (int row = 0; row < size; row++) {
+            column[row] = rows.getEpochDay(row);
+        }
+        dates = new RunLengthColumn(column, size);
+
+        for (int row = 0; row < size; row++) {
+            column[row] = rows.getBoroughId(row);
+        }
+        boroughs = PackedColumn.of(column, size);
+
+        values = new IntColumn[FIELD_COUNT];
+        nulls = new long[FIELD_COUNT][(size + 63) >>> 6];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            // Null values are only marked here, encode() gives them a value
+            // that does not widen the range of the column
+            boolean[] isNull = new boolean[size];
+            for (int row = 0; row < size; row++) {
+                isNull[row] = rows.isNull(row, field);
+                if (isNull[row]) {
+                    nulls[field][row >>> 6] |= 1L << row;
+                } else {
+                    column[row] = rows.getValue(row, field);
+                }
+            }
+
+            values[field] = encode(column, isNull);
+        }
+    }
+
+    /**
+     * Compresses the columns of the given rows, and prints how much memory the
+     * compression saved.
+     *
+     * @param rows the rows to compress
+     * @return a batch holding the same rows
+     */
+    public static CompressedColumnBatch compress(ColumnData rows) {
+        CompressedColumnBatch batch = new CompressedColumnBatch(rows);
+        System.out.printf("Compressed %d records from %.1f MB to %.1f MB%n", batch.size,
+                rows.getByteSize() / 1e6, batch.getCompressedSize() / 1e6);
+        return batch;
+    }
+
+    /**
+     * Encodes the values of a field in the smaller of the frame-of-reference
+     * and per-borough delta encodings.
+     *
+     * @param column the values of the field in each row
+     * @param isNull whether the field is null in each row
+     * @return the encoded column
+     */
+    private IntColumn encode(int[] column, boolean[] isNull) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int row = 0; row < size; row++) {
+            if (!isNull[row]) {
+                min = Math.min(min, column[row]);
+                max = Math.max(max, column[row]);
+            }
+        }
+        for (int row = 0; row < size; row++) {
+            if (isNull[row]) {
+                column[row] = min > max ? 0 : min;
+            }
+        }
+
+        IntColumn packed = PackedColumn.of(column, size);
+        IntColumn delta = BoroughDeltaColumn.of(column, isNull, size, boroughs);
+        return delta != null && delta.getByteSize() < packed.getByteSize() ? delta : packed;
+    }
+
+    /**
+     * @return roughly how many bytes the compressed columns take up
+     */
+    public long getCompressedSize() {
+        long bytes = dates.getByteSize() + boroughs.getByteSize();
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            bytes += values[field].getByteSize() + nulls[field].length * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getEpochDay(int row) {
+        return dates.get(row);
+    }
+
+    @Override
+    public int getBoroughId(int row) {
+        return boroughs.get(row);
+    }
+
+    @Override
+    public boolean isNull(int row, int field) {
+        return (nulls[field][row >>> 6] & (1L << row)) != 0;
+    }
+
+    @Override
+    public int getValue(int row, int field) {
+        return isNull(row, field) ? 0 : values[field].get(row);
+    }
+
+    @Override
+    public CovidData getRecord(int row) {
+        int[] rowValues = new int[FIELD_COUNT];
+        int nullMask = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            rowValues[field] = getValue(row, field);
+            if (isNull(row, field)) {
+                nullMask |= 1 << field;
+            }
+        }
+        return new CovidData(getEpochDay(row), getBoroughId(row), rowValues, nullMask);
+    }
+
+    @Override
+    public long getByteSize() {
+        return ColumnBatch.getByteSize(size);
+    }
+
+    /**
+     * Decodes every column and writes it uncompressed, in the same layout as
+     * ColumnBatch.writeTo().
+     */
+    @Override
+    public void writeTo(ByteBuffer buffer) {
+        for (int row = 0; row < size; row++) {
+            buffer.putInt(getEpochDay(row));
+        }
+        for (int row = 0; row < size; row++) {
+            buffer.putInt(getBoroughId(row));
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            for (int row = 0; row < size; row++) {
+                buffer.putInt(getValue(row, field));
+            }
+            for (long word : nulls[field]) {
+                buffer.putLong(word);
+            }
+        }
+    }
+
+    /**
+     * A column of ints that are decoded as they are read.
+     */
+    private interface IntColumn {
+        /**
+         * @return the value in the row
+         */
+        int get(int row);
+
+        /**
+         * @return roughly how many bytes the column takes up
+         */
+        long getByteSize();
+    }
+
+    /**
+     * A column stored as runs of equal values: the value of each run and the
+     * row it starts on. The run holding the first row of each block of 64
+     * rows is kept, so that finding the run of a row only steps over the few
+     * runs before it in its block (none or one when each date has a row for
+     * every borough).
+     */
+    private static class RunLengthColumn implements IntColumn {
+        private static final int BLOCK_SHIFT = 6;
+
+        private final int[] runValues;
+        private final int[] runStarts;
+        private final int[] blockRuns;
+
+        RunLengthColumn(int[] column, int size) {
+            int runs = 0;
+            for (int row = 0; row < size; row++) {
+                if (row == 0 || column[row] != column[row - 1]) {
+                    runs++;
+                }
+            }
+
+            runValues = new int[runs];
+            runStarts = new int[runs];
+            blockRuns = new int[(size >>> BLOCK_SHIFT) + 1];
+            int run = -1;
+            for (int row = 0; row < size; row++) {
+                if (row == 0 || column[row] != column[row - 1]) {
+                    run++;
+                    runValues[run] = column[row];
+                    runStarts[run] = row;
+                }
+                if ((row & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+                    blockRuns[row >>> BLOCK_SHIFT] = run;
+                }
+            }
+        }
+
+        @Override
+        public int get(int row) {
+            int run = blockRuns[row >>> BLOCK_SHIFT];
+            while (run + 1 < runStarts.length && runStarts[run + 1] <= row) {
+                run++;
+            }
+            return runValues[run];
+        }
+
+        @Override
+        public long getByteSize() {
+            return (2L * runValues.length + blockRuns.length) * Integer.BYTES;
+        }
+    }
+
+    /**
+     * A column stored as the difference of each value from the smallest one
+     * (the reference), in a byte or short if every difference fits.
+     */
+    private static class PackedColumn implements IntColumn {
+        private final int reference;
+        private final byte[] bytes;
+        private final short[] shorts;
+        private final int[] ints;
+
+        private PackedColumn(int reference, byte[] bytes, short[] shorts, int[] ints) {
+            this.reference = reference;
+            this.bytes = bytes;
+            this.shorts = shorts;
+            this.ints = ints;
+        }
+
+        /**
+         * @param column the values of each row
+         * @param size   the number of rows
+         * @return the values packed into the smallest type that holds them
+         */
+        static PackedColumn of(int[] column, int size) {
+            int min = 0;
+            int max = 0;
+            for (int row = 0; row < size; row++) {
+                min = row == 0 ? column[row] : Math.min(min, column[row]);
+                max = row == 0 ? column[row] : Math.max(max, column[row]);
+            }
+
+            long range = (long) max - min;
+            if (range <= 0xFF) {
+                byte[] packed = new byte[size];
+                for (int row = 0; row < size; row++) {
+                    packed[row] = (byte) (column[row] - min);
+                }
+                return new PackedColumn(min, packed, null, null);
+            }
+            if (range <= 0xFFFF) {
+                short[] packed = new short[size];
+                for (int row = 0; row < size; row++) {
+                    packed[row] = (short) (column[row] - min);
+                }
+                return new PackedColumn(min, null, packed, null);
+            }
+            int[] packed = new int[size];
+            System.arraycopy(column, 0, packed, 0, size);
+            return new PackedColumn(0, null, null, packed);
+        }
+
+        @Override
+        public int get(int row) {
+            if (bytes != null) {
+                return reference + (bytes[row] & 0xFF);
+            }
+            if (shorts != null) {
+                return reference + (shorts[row] & 0xFFFF);
+            }
+            return ints[row];
+        }
+
+        @Override
+        public long getByteSize() {
+            if (bytes != null) {
+                return bytes.length;
+            }
+            if (shorts != null) {
+                return shorts.length * (long) Short.BYTES;
+            }
+            return ints.length * (long) Integer.BYTES;
+        }
+    }
+
+    /**
+     * A column stored as the difference of each value from the smallest value
+     * of the same borough in its block of rows. Running totals only grow by a
+     * day's count from one row of a borough to the next, so the differences
+     * are small even when the totals are large.
+     */
+    private static class BoroughDeltaColumn implements IntColumn {
+        // Rows in each block (about a month of London's rows)
+        private static final int BLOCK_SHIFT = 10;
+
+        private final PackedColumn boroughs;
+        private final int boroughCount;
+
+        // The smallest value of each borough in each block, at
+        // block * boroughCount + borough
+        private final int[] bases;
+        private final PackedColumn deltas;
+
+        private BoroughDeltaColumn(PackedColumn boroughs, int boroughCount, int[] bases, PackedColumn deltas) {
+            this.boroughs = boroughs;
+            this.boroughCount = boroughCount;
+            this.bases = bases;
+            this.deltas = deltas;
+        }
+
+        /**
+         * @param column   the values of each row
+         * @param isNull   whether the value of each row is null
+         * @param size     the number of rows
+         * @param boroughs the borough id of each row
+         * @return the encoded column, or null if the differences would not
+         *         fit in a short
+         */
+        static BoroughDeltaColumn of(int[] column, boolean[] isNull, int size, PackedColumn boroughs) {
+            int boroughCount = 0;
+            for (int row = 0; row < size; row++) {
+                boroughCount = Math.max(boroughCount, boroughs.get(row) + 1);
+            }
+
+            // With too many boroughs the bases take up more than the values
+            int blockCount = (size >>> BLOCK_SHIFT) + 1;
+            if ((long) blockCount * boroughCount > size / 2) {
+                return null;
+            }
+            int[] bases = new int[blockCount * boroughCount];
+            Arrays.fill(bases, Integer.MAX_VALUE);
+            for (int row = 0; row < size; row++) {
+                if (!isNull[row]) {
+                    int base = (row >>> BLOCK_SHIFT) * boroughCount + boroughs.get(row);
+                    bases[base] = Math.min(bases[base], column[row]);
+                }
+            }
+
+            int[] deltas = new int[size];
+            for (int row = 0; row < size; row++) {
+                if (!isNull[row]) {
+                    int base = bases[(row >>> BLOCK_SHIFT) * boroughCount + boroughs.get(row)];
+                    long delta = (long) column[row] - base;
+                    if (delta > 0xFFFF) {
+                        return null;
+                    }
+                    deltas[row] = (int) delta;
+                }
+            }
+            return new BoroughDeltaColumn(boroughs, boroughCount, bases, PackedColumn.of(deltas, size));
+        }
+
+        @Override
+        public int get(int row) {
+            return bases[(row >>> BLOCK_SHIFT) * boroughCount + boroughs.get(row)] + deltas.get(row);
+        }
+
+        @Override
+        public long getByteSize() {
+            return (long) bases.length * Integer.BYTES + deltas.getByteSize();
+        }
+    }
+}
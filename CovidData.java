@@ -8,137 +8,276 @@ import java.time.LocalDate;
 
 public class CovidData implements Comparable<CovidData>{
     /*
-    The date the COVID information (cases & deaths) was collected
+    The date the COVID information (cases & deaths) was collected, stored as
+    the number of days since 1970-01-01 so that dates compare as integers
     */
-    private String date;
+    private final int epochDay;
     
     /*
-    The COVID information is organised by (London) borough
+    The COVID information is organised by (London) borough, stored as the id
+    of the borough in the BoroughDictionary
     */
-    private String borough;
+    private final int boroughId;
     
     /*
     The COVID information that's collected daily for each London borough
     */
-    private Integer newCases;
-    private Integer totalCases;
-    private Integer newDeaths;
-    private Integer totalDeaths;
+    private final int newCases;
+    private final int totalCases;
+    private final int newDeaths;
+    private final int totalDeaths;
     
     /*
     Google analysed location data from Android smartphones to measure movement
     in London.  The data shows percent change from the baseline.  For example, 
     a negative value means there's less human traffic compared to the baseline.
     */
-    private Integer retailRecreationGMR;
-    private Integer groceryPharmacyGMR;
-    private Integer parksGMR;
-    private Integer transitGMR;
-    private Integer workplacesGMR;
-    private Integer residentialGMR;
+    private final int retailRecreationGMR;
+    private final int groceryPharmacyGMR;
+    private final int parksGMR;
+    private final int transitGMR;
+    private final int workplacesGMR;
+    private final int residentialGMR;
+
+    /*
+    One bit for each DataField (by ordinal), set when the field has no value
+    */
+    private final int nullMask;
 
     public CovidData(String date, String borough, Integer retailRecreationGMR, Integer groceryPharmacyGMR, 
                         Integer parksGMR, Integer transitGMR, Integer workplacesGMR, Integer residentialGMR, 
                         Integer newCases, Integer totalCases, Integer newDeaths, Integer totalDeaths) {
-        this.date = date;
-        this.borough = borough;
-        this.retailRecreationGMR = retailRecreationGMR;
-        this.groceryPharmacyGMR = groceryPharmacyGMR;
-        this.parksGMR = parksGMR;
-        this.transitGMR = transitGMR;
-        this.workplacesGMR = workplacesGMR;
-        this.residentialGMR = residentialGMR;
-        this.newCases = newCases;
-        this.totalCases = totalCases;
-        this.newDeaths = newDeaths;
-        this.totalDeaths = totalDeaths;
+        this((int) LocalDate.parse(date).toEpochDay(), BoroughDictionary.getInstance().getId(borough),
+                new Integer[] { retailRecreationGMR, groceryPharmacyGMR, parksGMR, transitGMR, workplacesGMR,
+                        residentialGMR, newCases, totalCases, newDeaths, totalDeaths });
+    }
+
+    /**
+     * Creates a record from boxed values, where null means the field has no value.
+     */
+    private CovidData(int epochDay, int boroughId, Integer[] values) {
+        this(epochDay, boroughId, unbox(values), nullMaskOf(values));
+    }
+
+    /**
+     * Creates a record without boxing any of its values.
+     *
+     * @param epochDay  the date, as the number of days since 1970-01-01
+     * @param boroughId the id of the borough in the BoroughDictionary
+     * @param values    the value of each DataField, indexed by ordinal
+     * @param nullMask  one bit for each DataField (by ordinal), set when the
+     *                  field has no value
+     */
+    public CovidData(int epochDay, int boroughId, int[] values, int nullMask) {
+        this.epochDay = epochDay;
+        this.boroughId = boroughId;
+        this.retailRecreationGMR = values[DataField.RETAIL_RECREATION_GMR.ordinal()];
+        this.groceryPharmacyGMR = values[DataField.GROCERY_PHARMACY_GMR.ordinal()];
+        this.parksGMR = values[DataField.PARKS_GMR.ordinal()];
+        this.transitGMR = values[DataField.TRANSIT_GMR.ordinal()];
+        this.workplacesGMR = values[DataField.WORKPLACES_GMR.ordinal()];
+        this.residentialGMR = values[DataField.RESIDENTIAL_GMR.ordinal()];
+        this.newCases = values[DataField.NEW_CASES.ordinal()];
+        this.totalCases = values[DataField.TOTAL_CASES.ordinal()];
+        this.newDeaths = values[DataField.NEW_DEATHS.ordinal()];
+        this.totalDeaths = values[DataField.TOTAL_DEATHS.ordinal()];
+        this.nullMask = nullMask;
     }
     
 
     public String getDate() {
-        return date;
+        return getLocalDate().toString();
+    }
+
+
+    /**
+     * @return the date the information was collected
+     */
+    public LocalDate getLocalDate() {
+        return LocalDate.ofEpochDay(epochDay);
+    }
+
+
+    /**
+     * @return the date the information was collected, as the number of days
+     *         since 1970-01-01
+     */
+    public int getEpochDay() {
+        return epochDay;
     }
 
 
     public String getBorough() {
-        return borough;
+        return BoroughDictionary.getInstance().getName(boroughId);
+    }
+
+
+    /**
+     * @return the id of the borough in the BoroughDictionary
+     */
+    public int getBoroughId() {
+        return boroughId;
     }
 
 
     public Integer getRetailRecreationGMR() {
-        return retailRecreationGMR;
+        return getValue(DataField.RETAIL_RECREATION_GMR);
     }
 
 
     public Integer getGroceryPharmacyGMR() {
-        return groceryPharmacyGMR;
+        return getValue(DataField.GROCERY_PHARMACY_GMR);
     }
 
 
     public Integer getParksGMR() {
-        return parksGMR;
+        return getValue(DataField.PARKS_GMR);
     }
 
 
     public Integer getTransitGMR() {
-        return transitGMR;
+        return getValue(DataField.TRANSIT_GMR);
     }
 
 
     public Integer getWorkplacesGMR() {
-        return workplacesGMR;
+        return getValue(DataField.WORKPLACES_GMR);
     }
 
 
     public Integer getResidentialGMR() {
-        return residentialGMR;
+        return getValue(DataField.RESIDENTIAL_GMR);
     }
 
 
     public Integer getNewCases() {
-        return newCases;
+        return getValue(DataField.NEW_CASES);
     }
 
 
     public Integer getTotalCases() {
-        return totalCases;
+        return getValue(DataField.TOTAL_CASES);
     }
 
 
     public Integer getNewDeaths() {
-        return newDeaths;
+        return getValue(DataField.NEW_DEATHS);
     }
 
 
     public Integer getTotalDeaths() {
-        return totalDeaths;
+        return getValue(DataField.TOTAL_DEATHS);
+    }
+
+
+    /**
+     * @param field the field to check
+     * @return true if the field has no value in this record
+     */
+    public boolean isNull(DataField field) {
+        return (nullMask & (1 << field.ordinal())) != 0;
+    }
+
+
+    /**
+     * Returns the value of a field without boxing it. Check isNull() first, as
+     * fields without a value return 0.
+     *
+     * @param field the field to read
+     * @return the value of the field
+     */
+    public int getInt(DataField field) {
+        switch (field) {
+            case RETAIL_RECREATION_GMR:
+                return retailRecreationGMR;
+            case GROCERY_PHARMACY_GMR:
+                return groceryPharmacyGMR;
+            case PARKS_GMR:
+                return parksGMR;
+            case TRANSIT_GMR:
+                return transitGMR;
+            case WORKPLACES_GMR:
+                return workplacesGMR;
+            case RESIDENTIAL_GMR:
+                return residentialGMR;
+            case NEW_CASES:
+                return newCases;
+            case TOTAL_CASES:
+                return totalCases;
+            case NEW_DEATHS:
+                return newDeaths;
+            default:
+                return totalDeaths;
+        }
+    }
+
+
+    /**
+     * @return one bit for each DataField (by ordinal), set when the field has
+     *         no value
+     */
+    public int getNullMask() {
+        return nullMask;
+    }
+
+
+    /**
+     * @param field the field to read
+     * @return the value of the field, or null if it has no value
+     */
+    private Integer getValue(DataField field) {
+        return isNull(field) ? null : getInt(field);
+    }
+
+
+    /**
+     * @return the values with nulls replaced by 0
+     */
+    private static int[] unbox(Integer[] values) {
+        int[] unboxed = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            unboxed[i] = values[i] == null ? 0 : values[i];
+        }
+        return unboxed;
+    }
+
+
+    /**
+     * @return a mask with a bit set for each null value
+     */
+    private static int nullMaskOf(Integer[] values) {
+        int mask = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
     }
 
     @Override
     public String toString() {
         return "Covid Record {" + 
-        " date='" + date +'\'' +
-        ", borough='" + borough +'\'' +
-        ", retailRecreationGMR=" + retailRecreationGMR + 
-        ", groceryPharmacyGMR=" + groceryPharmacyGMR + 
-        ", parksGMR=" + parksGMR + 
-        ", transitGMR=" + transitGMR + 
-        ", workplacesGMR=" + workplacesGMR + 
-        ", residentialGMR=" + residentialGMR + 
-        ", newCases=" + newCases + 
-        ", totalCases=" + totalCases + 
-        ", newDeaths=" + newDeaths + 
-        ", totalDeaths=" + totalDeaths + 
+        " date='" + getDate() +'\'' +
+        ", borough='" + getBorough() +'\'' +
+        ", retailRecreationGMR=" + getRetailRecreationGMR() + 
+        ", groceryPharmacyGMR=" + getGroceryPharmacyGMR() + 
+        ", parksGMR=" + getParksGMR() + 
+        ", transitGMR=" + getTransitGMR() + 
+        ", workplacesGMR=" + getWorkplacesGMR() + 
+        ", residentialGMR=" + getResidentialGMR() + 
+        ", newCases=" + getNewCases() + 
+        ", totalCases=" + getTotalCases() + 
+        ", newDeaths=" + getNewDeaths() + 
+        ", totalDeaths=" + getTotalDeaths() + 
         "}";
     }
 
     /**
-     * Comparing two LocalDates; used when sorting data
+     * Comparing two dates; used when sorting data
      */
     @Override
     public int compareTo(CovidData cd) {
-        LocalDate d = LocalDate.parse(this.date);
-        LocalDate d2 = LocalDate.parse(cd.getDate());
-    	return d.compareTo(d2);
+    	return Integer.compare(epochDay, cd.epochDay);
     }
 }
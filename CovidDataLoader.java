@@ -1,47 +1,129 @@
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.time.LocalDate;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleConsumer;
+import java.util.zip.CRC32;
 import com.opencsv.CSVReader;
 
 import java.net.URISyntaxException;
 
 public class CovidDataLoader {
- 
+    // Smallest chunk worth handing to its own thread when loading in parallel
+    private static final long MIN_CHUNK_SIZE = 1 << 20;
+
+    // Number of chunks given to each core, so that uneven chunks balance out
+    private static final int CHUNKS_PER_CORE = 4;
+
+    // Largest chunk that is mapped at once (mapped buffers are limited to 2GB)
+    private static final long MAX_CHUNK_SIZE = 1 << 30;
+
+    // Rough length of a row, used to size the column arrays of each chunk
+    private static final int ESTIMATED_ROW_LENGTH = 48;
+
+    // Rough heap taken by each row of a run while it is parsed, checked for
+    // revisions and sorted by sortIntoSnapshot() (a few copies of its columns)
+    private static final int SORT_BYTES_PER_ROW = 256;
+
+    // Number of columns that are read: date, borough and the DataFields
+    private static final int FIELD_COUNT = DataField.values().length;
+    private static final int COLUMN_COUNT = FIELD_COUNT + 2;
+
+    // Names of the date and borough columns in the header of the csv file
+    private static final String DATE_COLUMN = "date";
+    private static final String BOROUGH_COLUMN = "borough";
+
+    // Longest line that a field is read from after loading (see CsvColumnSource)
+    private static final int MAX_LINE_LENGTH = 1 << 16;
+
+    // Number of bytes before the end of the parsed rows that are hashed, to
+    // check that later rows were only added after them (see getTailHash())
+    private static final int TAIL_HASH_LENGTH = 4096;
+
+    // Each delimiter repeated in every byte of a word, for scanning 8 bytes at a time
+    private static final long COMMAS = 0x2C2C2C2C2C2C2C2CL;
+    private static final long LINE_BREAKS = 0x0A0A0A0A0A0A0A0AL;
+    private static final long QUOTES = 0x2222222222222222L;
+
+    // Told how much of the file has been parsed, as a fraction from 0 to 1
+    private DoubleConsumer progressListener = progress -> {
+    };
+
+    // Whether the last load read the whole file without an error
+    private boolean loadComplete;
+
+    // Position in the file just after the rows parsed by the last load
+    private long parsedEnd = -1;
+
+    // Fields parsed by loadColumns(), the others are read from the file when
+    // they are first used
+    private Set<DataField> projection = EnumSet.allOf(DataField.class);
+
+    // Directory or glob pattern of the csv files to load, or null for the
+    // covid_london.csv resource
+    private final String dataLocation;
+
+    /**
+     * Creates a loader of the covid_london.csv file next to the classes.
+     */
+    public CovidDataLoader() {
+        this(null);
+    }
+
+    /**
+     * Creates a loader of several csv files, e.g. one for each month or
+     * region. The files are found again each time they are loaded, so files
+     * added since the last load are included.
+     *
+     * @param dataLocation a csv file, a directory whose csv files are loaded,
+     *                     or a glob pattern of file names in a directory
+     *                     (e.g. "data/covid_2022-*.csv")
+     */
+    public CovidDataLoader(String dataLocation) {
+        this.dataLocation = dataLocation;
+    }
+
     /** 
      * Return an ArrayList containing the rows in the Covid London data set csv file.
      */
     public ArrayList<CovidData> load() {
         System.out.println("Begin loading Covid London dataset...");
         ArrayList<CovidData> records = new ArrayList<CovidData>();
+        loadComplete = false;
         try{
-            URL url = getClass().getResource("covid_london.csv");
-            CSVReader reader = new CSVReader(new FileReader(new File(url.toURI()).getAbsolutePath()));
+            CSVReader reader = new CSVReader(new FileReader(getDataFile().getAbsolutePath()));
             String [] line;
-            //skip the first row (column headers)
-            reader.readNext();
+            // find the position of each column from the column headers
+            int[] columns = mapColumns(reader.readNext());
             while ((line = reader.readNext()) != null) {
-                
-                String date    = line[0];
-                String borough    = line[1];    
-                Integer retailRecreationGMR    = convertInt(line[2]);    
-                Integer groceryPharmacyGMR    = convertInt(line[3]);    
-                Integer parksGMR    = convertInt(line[4]);    
-                Integer transitGMR    = convertInt(line[5]);    
-                Integer workplacesGMR    = convertInt(line[6]);    
-                Integer residentialGMR    = convertInt(line[7]);    
-                Integer newCases    = convertInt(line[8]);    
-                Integer totalCases    = convertInt(line[9]);    
-                Integer newDeaths    = convertInt(line[10]);    
-                Integer totalDeaths    = convertInt(line[11]);                
-
-                CovidData record = new CovidData(date,borough,retailRecreationGMR,
-                    groceryPharmacyGMR,parksGMR,transitGMR,workplacesGMR,
-                    residentialGMR,newCases,totalCases,newDeaths,totalDeaths);
-                records.add(record);
-            }
-        } catch(IOException | URISyntaxException e){
+                records.add(createRecord(line, columns));
+            }
+            loadComplete = true;
+        } catch(IOException | URISyntaxException | RuntimeException e){
             System.out.println("Something Went Wrong?!");
             e.printStackTrace();
         }
@@ -49,6 +131,967 @@ public class CovidDataLoader {
         return records;
     }
 
+    /**
+     * Return an ArrayList containing the rows in the Covid London data set csv
+     * file, in the same order as load().
+     *
+     * The file is memory-mapped and split into chunks that each end on a line
+     * break. The chunks are parsed on all available cores and the results are
+     * joined back together in file order. The throughput of each chunk is
+     * printed, so that the scaling with the number of cores can be seen.
+     */
+    public ArrayList<CovidData> loadParallel() {
+        ArrayList<CovidData> records = new ArrayList<CovidData>();
+        loadColumns().addRecordsTo(records);
+        return records;
+    }
+
+    /**
+     * Return a ColumnBatch containing the rows in the Covid London data set csv
+     * file, in file order, without creating a CovidData record for each row.
+     * The file is parsed in parallel in the same way as loadParallel().
+     */
+    public ColumnBatch loadColumns() {
+        return loadColumnsFrom(0);
+    }
+
+    /**
+     * Return a ColumnBatch containing the rows from a position in the csv file
+     * to its end, e.g. the rows added since the file was last loaded (see
+     * getParsedEnd()). The column headers are still read from the start of the
+     * file.
+     *
+     * A row for the same date and borough as an earlier row is a revision of
+     * it: the batch holds one row for each date and borough, in the place of
+     * the first one, with the values of the last one.
+     *
+     * If the file cannot be read, or is missing a column, the error is printed
+     * and isLoadComplete() returns false.
+     *
+     * @param offset the position of the first line to parse, which must be
+     *               the start of a line (0 for the whole file)
+     */
+    public ColumnBatch loadColumnsFrom(long offset) {
+        System.out.println(offset == 0 ? "Begin loading Covid London dataset in parallel..."
+                : "Begin loading Covid London rows from byte " + offset + "...");
+        ColumnBatch records = new ColumnBatch(0, projection);
+        long startTime = System.nanoTime();
+        loadComplete = false;
+        parsedEnd = -1;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(cores);
+
+        try {
+            File dataFile = getDataFile();
+            try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+                String[] header = readHeader(channel);
+                long dataStart = Math.max(offset, findNextLineStart(channel, 0));
+                long[] boundaries = findChunkBoundaries(channel, dataStart, cores * CHUNKS_PER_CORE);
+                long fileSize = boundaries[boundaries.length - 1];
+
+                records = parseChunks(dataFile, channel, header, boundaries, executor, new AtomicLong(),
+                        fileSize - dataStart).get();
+
+                // Later rows for the same date and borough are revised figures
+                int parsedRows = records.size();
+                records = records.withoutDuplicateKeys();
+                if (records.size() < parsedRows) {
+                    System.out.println("Applied " + (parsedRows - records.size()) + " revised records");
+                }
+
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                System.out.printf("Parsed %d chunks on %d cores in %.1f ms (%.1f MB/s)%n", boundaries.length - 1,
+                        cores, seconds * 1000, (fileSize - dataStart) / 1e6 / seconds);
+                loadComplete = true;
+                parsedEnd = fileSize;
+            }
+        } catch (IOException | URISyntaxException | ExecutionException | RuntimeException e) {
+            System.out.println("Something Went Wrong?!");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+        }
+
+        System.out.println("Number of Loaded Records: " + records.size());
+        return records;
+    }
+
+    /**
+     * Return a ColumnBatch containing the rows of every csv file, sorted by
+     * date (oldest first), as with loadColumns() followed by
+     * ColumnBatch.sortedByDate().
+     *
+     * When the dataset is split over several files, the chunks of every file
+     * are parsed at the same time on all cores, and the rows of each file are
+     * sorted on their own as soon as the file has been parsed. The sorted files
+     * are then merged (see ColumnBatch.mergeByDate()) rather than sorting
+     * every row again, so loading many files takes about as long as loading
+     * the largest of them on its own. Rows of a later file (in name order)
+     * revise rows of an earlier file for the same date and borough. Every
+     * field is loaded, whatever the projection.
+     */
+    public ColumnBatch loadSortedColumns() {
+        List<File> files;
+        try {
+            files = getDataFiles();
+        } catch (IOException | URISyntaxException e) {
+            System.out.println("Could not find the csv files: " + e);
+            loadComplete = false;
+            parsedEnd = -1;
+            return new ColumnBatch(0);
+        }
+        if (files.size() == 1) {
+            return loadColumns().sortedByDate();
+        }
+
+        System.out.println("Begin loading Covid London dataset from " + files.size() + " files in parallel...");
+        ColumnBatch records = new ColumnBatch(0);
+        long startTime = System.nanoTime();
+        loadComplete = false;
+        parsedEnd = -1;
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(cores);
+        List<FileChannel> channels = new ArrayList<>();
+
+        try {
+            long totalSize = 0;
+            for (File file : files) {
+                FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+                channels.add(channel);
+                totalSize += channel.size();
+            }
+
+            // Submit the chunks of every file before waiting for any of them
+            AtomicLong bytesParsed = new AtomicLong();
+            List<CompletableFuture<ColumnBatch>> runs = new ArrayList<>();
+            int chunkCount = 0;
+            for (int i = 0; i < files.size(); i++) {
+                FileChannel channel = channels.get(i);
+                String[] header = readHeader(channel);
+                long[] boundaries = findChunkBoundaries(channel, findNextLineStart(channel, 0),
+                        cores * CHUNKS_PER_CORE);
+                chunkCount += boundaries.length - 1;
+
+                runs.add(parseChunks(files.get(i), channel, header, boundaries, executor, bytesParsed, totalSize)
+                        .thenApplyAsync(rows -> {
+                            // The merged rows have no single file to read other fields from
+                            rows.loadAllFields();
+                            return rows.withoutDuplicateKeys().sortedByDate();
+                        }, executor));
+            }
+
+            List<ColumnBatch> sortedRuns = new ArrayList<>();
+            for (CompletableFuture<ColumnBatch> run : runs) {
+                sortedRuns.add(run.get());
+            }
+
+            // Rows of a later file for the same date and borough are revised figures
+            ColumnBatch merged = ColumnBatch.mergeByDate(sortedRuns);
+            records = merged.withoutDuplicateKeys();
+            if (records.size() < merged.size()) {
+                System.out.println("Applied " + (merged.size() - records.size()) + " revised records");
+            }
+
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            System.out.printf("Parsed %d chunks of %d files on %d cores in %.1f ms (%.1f MB/s)%n", chunkCount,
+                    files.size(), cores, seconds * 1000, totalSize / 1e6 / seconds);
+            loadComplete = true;
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            System.out.println("Something Went Wrong?!");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdown();
+            for (FileChannel channel : channels) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.out.println("Could not close a csv file: " + e);
+                }
+            }
+        }
+
+        System.out.println("Number of Loaded Records: " + records.size());
+        return records;
+    }
+
+    /**
+     * Sorts the rows of the csv file by date into a snapshot of it, holding
+     * only about memoryBudget bytes of rows on the heap however large the file
+     * is (an external merge sort). The file is parsed a run of rows at a time,
+     * and each run is sorted and spilled to a temporary file. The runs are
+     * then merged straight into the snapshot file (see SpilledRuns), which can
+     * be read back with DatasetSnapshot.load().
+     *
+     * Rows for the same date and borough are handled as by loadColumns(). Every
+     * field is loaded, whatever the projection.
+     *
+     * @param snapshot     the snapshot of the csv file to save the rows to
+     * @param memoryBudget the most memory that the rows being sorted may take
+     *                     up, in bytes
+     * @return true if every row was sorted and the snapshot was saved
+     */
+    public boolean sortIntoSnapshot(DatasetSnapshot snapshot, long memoryBudget) {
+        System.out.printf("Begin sorting Covid London dataset within %.1f MB of memory...%n", memoryBudget / 1e6);
+        long startTime = System.nanoTime();
+        loadComplete = false;
+        parsedEnd = -1;
+
+        long runRows = Math.max(1, memoryBudget / SORT_BYTES_PER_ROW);
+        long runSize = Math.min(runRows * ESTIMATED_ROW_LENGTH, MAX_CHUNK_SIZE);
+        Executor sameThread = Runnable::run;
+
+        try {
+            File dataFile = getDataFile();
+            try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+                    SpilledRuns runs = new SpilledRuns(null)) {
+                String[] header = readHeader(channel);
+                long dataStart = findNextLineStart(channel, 0);
+                long fileSize = channel.size();
+                AtomicLong bytesParsed = new AtomicLong();
+
+                // Only one run is held on the heap at a time
+                long from = dataStart;
+                while (from < fileSize) {
+                    long to = findNextLineStart(channel, Math.min(from + runSize, fileSize));
+                    ColumnBatch rows = parseChunks(dataFile, channel, header, new long[] {from, to}, sameThread,
+                            bytesParsed, fileSize - dataStart).join();
+                    rows.loadAllFields();
+                    runs.add(rows.withoutDuplicateKeys().sortedByDate());
+                    from = to;
+                }
+
+                boolean saved = snapshot.save(runs, fileSize);
+                double seconds = (System.nanoTime() - startTime) / 1e9;
+                System.out.printf("Sorted %d runs (%.1f MB spilled) in %.1f ms (%.1f MB/s)%n", runs.getRunCount(),
+                        runs.getSpilledBytes() / 1e6, seconds * 1000, (fileSize - dataStart) / 1e6 / seconds);
+                System.out.println("Number of Loaded Records: " + runs.size());
+                loadComplete = saved;
+                parsedEnd = saved ? fileSize : -1;
+                return saved;
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.out.println("Something Went Wrong?!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Parses the chunks of a file on the threads of an executor, and joins
+     * them together in file order once they have all been parsed.
+     *
+     * @param file        the csv file being loaded
+     * @param channel     the channel of the file
+     * @param header      the column headers of the file
+     * @param boundaries  the start of each chunk, followed by the end of the
+     *                    last one (see findChunkBoundaries())
+     * @param executor    the executor to parse the chunks on
+     * @param bytesParsed the number of bytes parsed so far, for reporting
+     *                    progress
+     * @param totalSize   the number of bytes that are being parsed altogether
+     * @return the rows of the file, in file order, once they are parsed
+     */
+    private CompletableFuture<ColumnBatch> parseChunks(File file, FileChannel channel, String[] header,
+            long[] boundaries, Executor executor, AtomicLong bytesParsed, long totalSize) {
+        int[] columns = mapColumns(header);
+        List<CompletableFuture<ColumnBatch>> chunks = new ArrayList<>();
+        for (int i = 0; i < boundaries.length - 1; i++) {
+            final int chunkNumber = i;
+            final long from = boundaries[i];
+            final long to = boundaries[i + 1];
+            chunks.add(CompletableFuture.supplyAsync(() -> {
+                try {
+                    ColumnBatch batch = parseChunk(channel, chunkNumber, from, to, header.length, columns);
+                    progressListener.accept((double) bytesParsed.addAndGet(to - from) / totalSize);
+                    return batch;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, executor));
+        }
+
+        return CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            ColumnBatch records = new ColumnBatch(0, projection);
+            records.setSource(new CsvColumnSource(file, columns));
+            for (CompletableFuture<ColumnBatch> chunk : chunks) {
+                records.append(chunk.join());
+            }
+            return records;
+        });
+    }
+
+    /**
+     * Sets the fields that loadColumns() parses. The date and borough of each
+     * row are always parsed. The other fields are read from the file the first
+     * time they are used, so loading is quicker and uses less memory when only
+     * a few fields are needed.
+     *
+     * @param fields the fields to parse while loading
+     */
+    public void setProjection(Set<DataField> fields) {
+        projection = EnumSet.noneOf(DataField.class);
+        projection.addAll(fields);
+    }
+
+    /**
+     * Sets the listener that is told how much of the file has been parsed by
+     * loadParallel(). The listener is called from the threads parsing the file.
+     *
+     * @param progressListener takes the fraction of the file parsed, from 0 to 1
+     */
+    public void setProgressListener(DoubleConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @return true if the last load read the whole file without an error
+     */
+    public boolean isLoadComplete() {
+        return loadComplete;
+    }
+
+    /**
+     * @return the position in the file just after the rows parsed by the last
+     *         call to loadColumns() or loadColumnsFrom(), or -1 if it did not
+     *         complete (or several files were loaded)
+     */
+    public long getParsedEnd() {
+        return parsedEnd;
+    }
+
+    /**
+     * Hashes the bytes just before a position in the csv file, so that it can
+     * later be checked that the file has only had rows added after that
+     * position (see isUnchangedBefore()).
+     *
+     * @param end the position, e.g. getParsedEnd()
+     * @return the CRC32 hash of up to 4KB before the position
+     * @throws IOException if the file could not be read
+     * @throws URISyntaxException if the location of the file is not valid
+     */
+    public long getTailHash(long end) throws IOException, URISyntaxException {
+        try (FileChannel channel = FileChannel.open(getDataFile().toPath(), StandardOpenOption.READ)) {
+            return getTailHash(channel, end);
+        }
+    }
+
+    /**
+     * Checks whether the csv file still holds the same rows up to a position,
+     * so that only the rows after it need to be loaded. Only the bytes just
+     * before the position are compared, as rows are added to the end of the
+     * file; rows changed further back are not noticed.
+     *
+     * @param end      the position that the file was parsed up to
+     * @param tailHash the value of getTailHash() when the file was parsed
+     * @return true if the file is at least as long, and the bytes before the
+     *         position have not changed
+     * @throws IOException if the file could not be read
+     * @throws URISyntaxException if the location of the file is not valid
+     */
+    public boolean isUnchangedBefore(long end, long tailHash) throws IOException, URISyntaxException {
+        if (end < 0) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(getDataFile().toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < end || getTailHash(channel, end) != tailHash) {
+                return false;
+            }
+
+            // A last line without a line break may have been added to
+            if (end > 0 && end < channel.size()) {
+                ByteBuffer lastByte = ByteBuffer.allocate(1);
+                channel.read(lastByte, end - 1);
+                return lastByte.get(0) == '\n';
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return the CRC32 hash of up to TAIL_HASH_LENGTH bytes before the end
+     */
+    private static long getTailHash(FileChannel channel, long end) throws IOException {
+        long start = Math.max(0, end - TAIL_HASH_LENGTH);
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    /**
+     * Reads the column headers from the first line of the file.
+     *
+     * @param channel the channel of the file
+     * @return the name of each column, in order
+     * @throws IOException if the file could not be read
+     */
+    private String[] readHeader(FileChannel channel) throws IOException {
+        long headerEnd = findNextLineStart(channel, 0);
+        if (headerEnd > MAX_LINE_LENGTH) {
+            throw new IllegalStateException("The header of the csv file is too long: " + headerEnd + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) headerEnd);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                break;
+            }
+        }
+
+        int end = buffer.position();
+        while (end > 0 && (buffer.get(end - 1) == '\n' || buffer.get(end - 1) == '\r')) {
+            end--;
+        }
+        return splitLine(buffer, 0, end);
+    }
+
+    /**
+     * Finds the position of the date, borough and each DataField's column from
+     * the column headers, so that the columns may be in any order.
+     *
+     * @param header the name of each column, in order
+     * @return the position of the date column, the borough column, then the
+     *         column of each DataField
+     * @throws IllegalStateException if a column is missing
+     */
+    private static int[] mapColumns(String[] header) {
+        if (header == null) {
+            throw new IllegalStateException("The csv file has no header");
+        }
+
+        int[] columns = new int[COLUMN_COUNT];
+        columns[0] = findColumn(header, DATE_COLUMN);
+        columns[1] = findColumn(header, BOROUGH_COLUMN);
+        for (DataField field : DataField.values()) {
+            columns[field.ordinal() + 2] = findColumn(header, field.getColumnName());
+        }
+        return columns;
+    }
+
+    /**
+     * @return the position of the column with the given name
+     * @throws IllegalStateException if there is no such column
+     */
+    private static int findColumn(String[] header, String name) {
+        for (int i = 0; i < header.length; i++) {
+            // Ignore a byte order mark before the first name
+            String columnName = header[i].replace("\uFEFF", "").trim();
+            if (columnName.equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalStateException("The csv file has no " + name + " column");
+    }
+
+    /**
+     * Splits the file into roughly equal chunks. Every chunk, apart from the last
+     * one, ends just after a line break, so no row is split between two chunks.
+     *
+     * @param channel   the channel of the file to split
+     * @param dataStart the position of the first line to split (after the
+     *                  column headers)
+     * @param maxChunks the largest number of chunks to split the file into
+     * @return the start positions of each chunk, followed by the end of the file
+     * @throws IOException if the file could not be read
+     */
+    private long[] findChunkBoundaries(FileChannel channel, long dataStart, int maxChunks) throws IOException {
+        long fileSize = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, (fileSize - dataStart) / maxChunks + 1);
+        chunkSize = Math.min(chunkSize, MAX_CHUNK_SIZE);
+
+        ArrayList<Long> boundaries = new ArrayList<>();
+        boundaries.add(dataStart);
+
+        long position = dataStart;
+        while (position + chunkSize < fileSize) {
+            position = findNextLineStart(channel, position + chunkSize);
+            boundaries.add(position);
+        }
+
+        if (position < fileSize) {
+            boundaries.add(fileSize);
+        }
+
+        return boundaries.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * @param channel  the channel of the file to search
+     * @param position the position to start searching from
+     * @return the position just after the next line break, or the end of the file
+     *         if there are no more line breaks
+     * @throws IOException if the file could not be read
+     */
+    private long findNextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (position < channel.size()) {
+            buffer.clear();
+            int bytesRead = channel.read(buffer, position);
+            for (int i = 0; i < bytesRead; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += bytesRead;
+        }
+        return channel.size();
+    }
+
+    /**
+     * Memory-maps and parses one chunk of the file, then prints how quickly
+     * the chunk was parsed.
+     *
+     * Dates, boroughs and numbers are decoded straight from the mapped bytes
+     * into the primitive columns of a ColumnBatch, so no Strings or boxed
+     * Integers are created for a row. Only rows containing quotes are split
+     * into Strings first.
+     *
+     * @param channel     the channel of the file being loaded
+     * @param chunkNumber the position of the chunk in the file (for reporting)
+     * @param from        the position of the first byte of the chunk
+     * @param to          the position just after the last byte of the chunk
+     * @param columnCount the number of columns in each row
+     * @param columns     the position of each column that is read (see
+     *                    mapColumns())
+     * @return the rows in the chunk, in file order
+     * @throws IOException if the chunk could not be mapped
+     */
+    private ColumnBatch parseChunk(FileChannel channel, int chunkNumber, long from, long to, int columnCount,
+            int[] columns) throws IOException {
+        long startTime = System.nanoTime();
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        // Little endian so that the first byte of a word is its lowest byte
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        ColumnBatch batch = new ColumnBatch((int) ((to - from) / ESTIMATED_ROW_LENGTH), projection);
+
+        // Start and end of each field in the current row, reused for every row
+        int[] fieldStarts = new int[columnCount];
+        int[] fieldEnds = new int[columnCount];
+
+        int lineStart = 0;
+        int limit = buffer.limit();
+        while (lineStart < limit) {
+            int fieldCount = 0;
+            int position = lineStart;
+            int lineEnd;
+            while (true) {
+                int delimiter = nextDelimiter(buffer, position, limit);
+                byte b = delimiter < limit ? buffer.get(delimiter) : (byte) '\n';
+                if (b == '"') {
+                    fieldCount = -1;
+                    lineEnd = nextLineBreak(buffer, delimiter, limit);
+                    break;
+                }
+
+                if (fieldCount < columnCount) {
+                    fieldStarts[fieldCount] = position;
+                    fieldEnds[fieldCount] = delimiter;
+                }
+                fieldCount++;
+                position = delimiter + 1;
+
+                if (b == '\n') {
+                    lineEnd = delimiter;
+                    break;
+                }
+            }
+
+            // Ignore the carriage return of Windows line endings
+            int contentEnd = (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') ? lineEnd - 1 : lineEnd;
+            if (contentEnd > lineStart) {
+                int row;
+                if (fieldCount < 0) {
+                    row = addRow(batch, splitLine(buffer, lineStart, contentEnd), columns);
+                } else if (fieldCount < columnCount) {
+                    throw new IllegalStateException("Expected " + columnCount + " columns but found "
+                            + fieldCount + " in row " + (batch.size() + 1) + " of chunk " + chunkNumber);
+                } else {
+                    row = addRow(batch, buffer, fieldStarts, fieldEnds, columns);
+                }
+                batch.setLineStart(row, from + lineStart);
+            }
+            lineStart = lineEnd + 1;
+        }
+
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        System.out.printf("Chunk %d: %d rows, %.2f MB in %.1f ms (%.1f MB/s) on %s%n", chunkNumber,
+                batch.size(), (to - from) / 1e6, seconds * 1000, (to - from) / 1e6 / seconds,
+                Thread.currentThread().getName());
+        return batch;
+    }
+
+    /**
+     * Adds a row to the batch by decoding its fields straight from the buffer.
+     * Only the fields loaded by the batch are decoded.
+     *
+     * @param batch       the batch to add the row to
+     * @param buffer      the buffer holding the row
+     * @param fieldStarts the position of the first byte of each field
+     * @param fieldEnds   the position just after the last byte of each field
+     * @param columns     the position of each column that is read
+     * @return the index of the new row
+     */
+    private int addRow(ColumnBatch batch, ByteBuffer buffer, int[] fieldStarts, int[] fieldEnds,
+            int[] columns) {
+        int epochDay = parseEpochDay(buffer, fieldStarts[columns[0]], fieldEnds[columns[0]]);
+        int boroughId = BoroughDictionary.getInstance().getId(buffer, fieldStarts[columns[1]],
+                fieldEnds[columns[1]]);
+        int row = batch.addRow(epochDay, boroughId);
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (batch.isLoaded(field)) {
+                int column = columns[field + 2];
+                parseInt(buffer, fieldStarts[column], fieldEnds[column], batch, row, field);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Adds a row to the batch from fields that have already been split into
+     * Strings. Only the fields loaded by the batch are converted.
+     *
+     * @param batch   the batch to add the row to
+     * @param line    the fields of the row, in the order of the csv columns
+     * @param columns the position of each column that is read
+     * @return the index of the new row
+     */
+    private int addRow(ColumnBatch batch, String[] line, int[] columns) {
+        int epochDay = (int) LocalDate.parse(line[columns[0]]).toEpochDay();
+        int boroughId = BoroughDictionary.getInstance().getId(line[columns[1]]);
+        int row = batch.addRow(epochDay, boroughId);
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (batch.isLoaded(field)) {
+                Integer value = convertInt(line[columns[field + 2]]);
+                if (value != null) {
+                    batch.setValue(row, field, value);
+                }
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Finds the next comma, line break or quote, checking eight bytes at a
+     * time. Each byte of a word is compared with the three delimiters at once
+     * using the "has zero byte" trick, so that fields are skipped without
+     * looking at each byte in turn.
+     *
+     * @param buffer   the buffer to search (must be little endian)
+     * @param position the position to start searching from
+     * @param limit    the position to stop searching at
+     * @return the position of the next delimiter, or the limit if there is none
+     */
+    private static int nextDelimiter(ByteBuffer buffer, int position, int limit) {
+        while (position + 8 <= limit) {
+            long word = buffer.getLong(position);
+            long matches = zeroBytes(word ^ COMMAS) | zeroBytes(word ^ LINE_BREAKS) | zeroBytes(word ^ QUOTES);
+            if (matches != 0) {
+                return position + (Long.numberOfTrailingZeros(matches) >>> 3);
+            }
+            position += 8;
+        }
+
+        while (position < limit) {
+            byte b = buffer.get(position);
+            if (b == ',' || b == '\n' || b == '"') {
+                return position;
+            }
+            position++;
+        }
+        return limit;
+    }
+
+    /**
+     * Marks the bytes of the word that are zero by setting their highest bit.
+     * Bytes above the first zero byte may also be marked, so only the lowest
+     * mark can be relied on.
+     */
+    private static long zeroBytes(long word) {
+        return (word - 0x0101010101010101L) & ~word & 0x8080808080808080L;
+    }
+
+    /**
+     * @return the position of the next line break that is not inside quotes, or
+     *         the limit if there is none
+     */
+    private static int nextLineBreak(ByteBuffer buffer, int position, int limit) {
+        boolean inQuotes = false;
+        for (int i = position; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                inQuotes = !inQuotes;
+            } else if (b == '\n' && !inQuotes) {
+                return i;
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Decodes a date in the form yyyy-MM-dd straight from the buffer. Dates in
+     * any other form are left to LocalDate.parse().
+     *
+     * @return the date as a count of days since 1970-01-01
+     */
+    private static int parseEpochDay(ByteBuffer buffer, int from, int to) {
+        if (to - from == 10 && buffer.get(from + 4) == '-' && buffer.get(from + 7) == '-') {
+            int year = parseDigits(buffer, from, from + 4);
+            int month = parseDigits(buffer, from + 5, from + 7);
+            int day = parseDigits(buffer, from + 8, from + 10);
+
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month)) {
+                return toEpochDay(year, month, day);
+            }
+        }
+
+        // Let LocalDate report (or accept) anything unusual
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buffer.get(i);
+        }
+        return (int) LocalDate.parse(new String(bytes, StandardCharsets.UTF_8)).toEpochDay();
+    }
+
+    /**
+     * @return the value of the digits in the buffer, or -1 if any byte is not a
+     *         digit
+     */
+    private static int parseDigits(ByteBuffer buffer, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of days in the month of the year
+     */
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        }
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    /**
+     * Converts a (non-negative) year, month and day to a count of days since
+     * 1970-01-01, giving the same result as LocalDate.toEpochDay().
+     */
+    private static int toEpochDay(int year, int month, int day) {
+        // Shift the year to start in March, so that leap days fall at the end
+        int shiftedYear = month <= 2 ? year - 1 : year;
+        int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+        int yearOfEra = shiftedYear - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Decodes an integer straight from the buffer and stores it in the batch.
+     * Fields that are empty or just whitespace are left as null.
+     *
+     * @throws NumberFormatException if the field is not a valid integer
+     */
+    private static void parseInt(ByteBuffer buffer, int from, int to, ColumnBatch batch, int row, int field) {
+        // Trim whitespace from both ends
+        while (from < to && buffer.get(from) <= ' ') {
+            from++;
+        }
+        while (to > from && buffer.get(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            return;
+        }
+
+        int i = from;
+        boolean negative = buffer.get(i) == '-';
+        if (negative || buffer.get(i) == '+') {
+            i++;
+        }
+        if (i == to) {
+            throw invalidNumber(buffer, from, to);
+        }
+
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidNumber(buffer, from, to);
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw invalidNumber(buffer, from, to);
+            }
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw invalidNumber(buffer, from, to);
+        }
+        batch.setValue(row, field, (int) value);
+    }
+
+    /**
+     * @return an exception describing the field that could not be parsed
+     */
+    private static NumberFormatException invalidNumber(ByteBuffer buffer, int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buffer.get(i);
+        }
+        return new NumberFormatException("For input string: \"" + new String(bytes, StandardCharsets.UTF_8) + "\"");
+    }
+
+    /**
+     * Splits one line of the file into its fields. Fields may be wrapped in
+     * double quotes, in which case commas inside them are kept and a doubled
+     * quote stands for a single quote, in the same way as CSVReader.
+     *
+     * @param buffer the buffer holding the line
+     * @param from   the position of the first byte of the line
+     * @param to     the position just after the last byte of the line
+     * @return the fields in the line
+     */
+    private static String[] splitLine(ByteBuffer buffer, int from, int to) {
+        ArrayList<String> fields = new ArrayList<>();
+        byte[] field = new byte[to - from];
+        int length = 0;
+        boolean inQuotes = false;
+
+        for (int i = from; i < to; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                if (inQuotes && i + 1 < to && buffer.get(i + 1) == '"') {
+                    field[length++] = '"';
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+            } else if (b == ',' && !inQuotes) {
+                fields.add(new String(field, 0, length, StandardCharsets.UTF_8));
+                length = 0;
+            } else {
+                field[length++] = b;
+            }
+        }
+        fields.add(new String(field, 0, length, StandardCharsets.UTF_8));
+
+        return fields.toArray(new String[0]);
+    }
+
+    /**
+     * Creates a record from the fields of one row of the csv file.
+     *
+     * @param line    the fields of the row, in the order of the csv columns
+     * @param columns the position of each column that is read (see
+     *                mapColumns())
+     * @return the record for the row
+     */
+    private CovidData createRecord(String[] line, int[] columns) {
+        String date    = line[columns[0]];
+        String borough    = line[columns[1]];
+        Integer retailRecreationGMR    = convertInt(line[columns[DataField.RETAIL_RECREATION_GMR.ordinal() + 2]]);
+        Integer groceryPharmacyGMR    = convertInt(line[columns[DataField.GROCERY_PHARMACY_GMR.ordinal() + 2]]);
+        Integer parksGMR    = convertInt(line[columns[DataField.PARKS_GMR.ordinal() + 2]]);
+        Integer transitGMR    = convertInt(line[columns[DataField.TRANSIT_GMR.ordinal() + 2]]);
+        Integer workplacesGMR    = convertInt(line[columns[DataField.WORKPLACES_GMR.ordinal() + 2]]);
+        Integer residentialGMR    = convertInt(line[columns[DataField.RESIDENTIAL_GMR.ordinal() + 2]]);
+        Integer newCases    = convertInt(line[columns[DataField.NEW_CASES.ordinal() + 2]]);
+        Integer totalCases    = convertInt(line[columns[DataField.TOTAL_CASES.ordinal() + 2]]);
+        Integer newDeaths    = convertInt(line[columns[DataField.NEW_DEATHS.ordinal() + 2]]);
+        Integer totalDeaths    = convertInt(line[columns[DataField.TOTAL_DEATHS.ordinal() + 2]]);
+
+        return new CovidData(date,borough,retailRecreationGMR,
+            groceryPharmacyGMR,parksGMR,transitGMR,workplacesGMR,
+            residentialGMR,newCases,totalCases,newDeaths,totalDeaths);
+    }
+
+    /**
+     * @return the csv file that the dataset is loaded from
+     * @throws IOException if the location matches no csv file
+     * @throws URISyntaxException if the location of the file is not valid
+     * @throws IllegalStateException if the dataset is loaded from several
+     *                               files
+     */
+    public File getDataFile() throws IOException, URISyntaxException {
+        if (dataLocation == null) {
+            URL url = getClass().getResource("covid_london.csv");
+            return new File(url.toURI());
+        }
+
+        List<File> files = getDataFiles();
+        if (files.size() != 1) {
+            throw new IllegalStateException("The dataset is loaded from " + files.size() + " files");
+        }
+        return files.get(0);
+    }
+
+    /**
+     * Finds the csv files that the dataset is loaded from: the file itself, the
+     * csv files in the directory, or the files matching the glob pattern, in
+     * name order.
+     *
+     * @return the csv files, at least one
+     * @throws IOException if the location matches no csv file, or its
+     *                     directory could not be read
+     * @throws URISyntaxException if the location of the file is not valid
+     */
+    public List<File> getDataFiles() throws IOException, URISyntaxException {
+        if (dataLocation == null) {
+            return List.of(getDataFile());
+        }
+
+        File location = new File(dataLocation);
+        if (location.isFile()) {
+            return List.of(location);
+        }
+
+        Path directory = location.toPath();
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:*.csv");
+        if (!location.isDirectory()) {
+            directory = directory.toAbsolutePath().getParent();
+            matcher = FileSystems.getDefault().getPathMatcher("glob:" + location.getName());
+        }
+
+        List<File> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry) && matcher.matches(entry.getFileName())) {
+                    files.add(entry.toFile());
+                }
+            }
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No csv files match " + dataLocation);
+        }
+
+        files.sort(Comparator.comparing(File::getName));
+        return files;
+    }
+
     /**
      *
      * @param doubleString the string to be converted to Double type
@@ -68,11 +1111,90 @@ public class CovidDataLoader {
      * @return the Integer value of the string, or -1 if the string is 
      * either empty or just whitespace
      */
-    private Integer convertInt(String intString){
+    private static Integer convertInt(String intString){
         if(intString != null && !intString.trim().equals("")){
             return Integer.parseInt(intString);
         }
         return null;
     }
 
+    /**
+     * Reads a field of rows that were not parsed while loading from their
+     * lines in the csv file, using the position of each row's line.
+     */
+    private static class CsvColumnSource implements ColumnSource {
+        private final File file;
+        private final int[] columns;
+
+        /**
+         * @param file    the csv file that the rows were loaded from
+         * @param columns the position of each column that is read (see
+         *                mapColumns())
+         */
+        CsvColumnSource(File file, int[] columns) {
+            this.file = file;
+            this.columns = columns;
+        }
+
+        @Override
+        public void readField(int field, long[] lineStarts, int size, ColumnBatch batch) throws IOException {
+            int column = columns[field + 2];
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long fileSize = channel.size();
+                MappedByteBuffer buffer = null;
+                long bufferStart = 0;
+
+                for (int row = 0; row < size; row++) {
+                    // Map a new part of the file if the line is not all in the mapped part
+                    long lineStart = lineStarts[row];
+                    long bufferEnd = buffer == null ? 0 : bufferStart + buffer.limit();
+                    if (buffer == null || lineStart < bufferStart
+                            || (lineStart + MAX_LINE_LENGTH > bufferEnd && bufferEnd < fileSize)) {
+                        bufferStart = lineStart;
+                        buffer = channel.map(FileChannel.MapMode.READ_ONLY, bufferStart,
+                                Math.min(fileSize - bufferStart, MAX_CHUNK_SIZE));
+                        buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    }
+
+                    readValue(buffer, (int) (lineStart - bufferStart), column, batch, row, field);
+                }
+            }
+        }
+
+        /**
+         * Finds a column in the line starting at the given position and sets its
+         * value in the batch.
+         */
+        private void readValue(ByteBuffer buffer, int lineStart, int column, ColumnBatch batch, int row,
+                int field) {
+            int limit = buffer.limit();
+            int position = lineStart;
+            for (int i = 0; i <= column; i++) {
+                int delimiter = nextDelimiter(buffer, position, limit);
+                byte b = delimiter < limit ? buffer.get(delimiter) : (byte) '\n';
+                if (b == '"') {
+                    // Rows with quotes are split into Strings, as when loading
+                    int lineEnd = nextLineBreak(buffer, delimiter, limit);
+                    int contentEnd = (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') ? lineEnd - 1
+                            : lineEnd;
+                    Integer value = convertInt(splitLine(buffer, lineStart, contentEnd)[column]);
+                    if (value != null) {
+                        batch.setValue(row, field, value);
+                    }
+                    return;
+                }
+
+                if (i == column) {
+                    // Trailing carriage returns are trimmed with other whitespace
+                    parseInt(buffer, position, delimiter, batch, row, field);
+                    return;
+                }
+                if (b == '\n') {
+                    throw new IllegalStateException("Expected " + (column + 1) + " columns but found " + (i + 1)
+                            + " in the line at " + lineStart);
+                }
+                position = delimiter + 1;
+            }
+        }
+    }
 }
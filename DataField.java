@@ -0,0 +1,84 @@
+import java.util.function.Function;
+
+/**
+ * The numeric columns of the Covid dataset, in the order they appear in the
+ * csv file. Each field knows its csv column name, the name shown to the user
+ * and how to read its value from a CovidData record.
+ *
+ * @version 2026.10.18
+ */
+public enum DataField {
+    RETAIL_RECREATION_GMR("retail_and_recreation", "Retail and Recreation Mobility",
+            CovidData::getRetailRecreationGMR),
+    GROCERY_PHARMACY_GMR("grocery_and_pharmacy", "Grocery and Pharmacy Mobility", CovidData::getGroceryPharmacyGMR),
+    PARKS_GMR("parks", "Parks Mobility", CovidData::getParksGMR),
+    TRANSIT_GMR("transit_stations", "Transit Stations Mobility", CovidData::getTransitGMR),
+    WORKPLACES_GMR("workplaces", "Workplaces Mobility", CovidData::getWorkplacesGMR),
+    RESIDENTIAL_GMR("residential", "Residential Mobility", CovidData::getResidentialGMR),
+    NEW_CASES("new_cases", "New Cases", CovidData::getNewCases),
+    TOTAL_CASES("total_cases", "Total Cases", CovidData::getTotalCases),
+    NEW_DEATHS("new_deaths", "New Deaths", CovidData::getNewDeaths),
+    TOTAL_DEATHS("total_deaths", "Total Deaths", CovidData::getTotalDeaths);
+
+    private final String columnName;
+    private final String displayName;
+    private final Function<CovidData, Integer> getter;
+
+    DataField(String columnName, String displayName, Function<CovidData, Integer> getter) {
+        this.columnName = columnName;
+        this.displayName = displayName;
+        this.getter = getter;
+    }
+
+    /**
+     * @param displayName the name of a field as it is shown to the user
+     * @return the field with the given display name, or null if there is none
+     */
+    public static DataField forDisplayName(String displayName) {
+        for (DataField field : values()) {
+            if (field.displayName.equals(displayName)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the name of the column in the header of the csv file
+     */
+    public String getColumnName() {
+        return columnName;
+    }
+
+    /**
+     * @return the name of the field as it is shown to the user
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    /**
+     * @return true if the values of the field are daily counts that can be
+     *         added up over a date range (unlike running totals or mobility
+     *         percentages)
+     */
+    public boolean isAdditive() {
+        return this == NEW_CASES || this == NEW_DEATHS;
+    }
+
+    /**
+     * @return true if rolling sums and averages of the field are meaningful
+     *         (daily counts and mobility percentages, but not running totals)
+     */
+    public boolean hasRollingWindows() {
+        return this != TOTAL_CASES && this != TOTAL_DEATHS;
+    }
+
+    /**
+     * @param record the record to read the field from
+     * @return the value of this field in the record, or null if it has no value
+     */
+    public Integer getValue(CovidData record) {
+        return getter.apply(record);
+    }
+}
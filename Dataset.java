@@ -1,9 +1,13 @@
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 import java.time.LocalDate;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.DoubleConsumer;
 import java.util.function.Function;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
 
 /**
  * Represents the data set that is loaded from a CovidDataLoader and processed.
@@ -11,31 +15,292 @@ import java.util.function.Function;
  * exists,
  * that all controllers have global access to.
  *
+ * The data is held in an immutable DatasetState, which is swapped for a new
+ * one when the data is replaced. Reading the data never locks, and each call
+ * works from a single version of the data, so the dataset can be read from
+ * several threads while it is being replaced.
+ *
  * @author Ishab Ahmed
  * @version 2022.03.24
  */
 public class Dataset {
-    // singleton instance of the Dataset
-    private static Dataset instance = null;
+    // singleton instance of the Dataset (only set once it has been loaded)
+    private static volatile Dataset instance = null;
+
+    // Held while the instance is being created (not the class lock, so that
+    // loadAsync() never waits for a load to finish)
+    private static final Object instanceLock = new Object();
+
+    // Completes once the instance has been loaded in the background
+    private static CompletableFuture<Dataset> loadingFuture = null;
+
+    // Where the columns of the instance are held in memory (guarded by instanceLock)
+    private static StorageMode storageMode = StorageMode.HEAP;
+
+    // Where the csv files are loaded from (null for covid_london.csv)
+    private static String dataLocation = null;
+
+    // Most memory that rows may take up while the csv file is sorted, or 0 to
+    // sort it in memory (guarded by instanceLock)
+    private static long memoryBudget = 0;
+
+    // Whether the csv file is watched for changes, so that they are shown
+    // without restarting the application (guarded by instanceLock)
+    private static boolean watchDataFile = true;
+
+    // data to be served, stored column by column in date order, with the
+    // executor that answers queries over it
+    private volatile DatasetState state;
+
+    // Held while the data is being replaced or added to, so that one update
+    // does not undo another (never held by readers)
+    private final Object updateLock = new Object();
 
-    // data to be served
-    private ArrayList<CovidData> data;
+    // Most memory that the results of recent queries may take up
+    private static final long QUERY_CACHE_SIZE = 16 * 1024 * 1024;
 
-    private String[] boroughs = { "Barking And Dagenham", "Barnet", "Bexley", "Brent", "Bromley", "Camden",
-            "City Of London", "Croydon", "Ealing", "Enfield", "Greenwich", "Hackney", "Hammersmith And Fulham",
-            "Haringey", "Harrow", "Havering", "Hillingdon", "Hounslow", "Islington", "Kensington And Chelsea",
-            "Kingston Upon Thames", "Lambeth", "Lewisham", "Merton", "Newham", "Redbridge", "Richmond Upon Thames",
-            "Southwark", "Sutton", "Tower Hamlets", "Waltham Forest", "Wandsworth", "Westminster" };
+    // Rough memory used by a CovidData record
+    private static final long RECORD_SIZE = 64;
+
+    // Results of recent queries, so that panels shown again for the same
+    // dates (or a borough's data shown again) are not worked out again
+    private final QueryCache queryCache = new QueryCache(QUERY_CACHE_SIZE);
+
+    private final String[] boroughs = BoroughDictionary.LONDON_BOROUGHS.clone();
 
     /**
      * Initialises its data field by loading the CovidData.
      * Private constructor used to prevent instantiation outside of this class.
+     * 
+     * The sorted data is read from a snapshot of the csv file if there is an up
+     * to date one, and any rows added to the file since it was saved are then
+     * added on their own. Otherwise the csv file is parsed and sorted, and a
+     * snapshot is saved for the next launch.
+     * 
+     * @param progressListener told how much of the data has been loaded, as a
+     *                         fraction from 0 to 1
+     * @param storage          where the columns are held in memory
+     */
+    private Dataset(DoubleConsumer progressListener, StorageMode storage) {
+        state = loadState(progressListener, storage, false, 0, null);
+        appendRowsAfterLoad();
+    }
+
+    /**
+     * Loads the rows of the csv file in date order, from its snapshot if it
+     * is up to date.
+     * 
+     * @param progressListener told how much of the data has been loaded, as a
+     *                         fraction from 0 to 1
+     * @param storage          where the columns are held in memory
+     * @param requireComplete  whether to give up if the csv file could not be
+     *                         read completely, rather than use the rows read
+     * @param version          the version of the loaded data
+     * @param executor         the executor of the previous data, whose
+     *                         settings are kept, or null for the defaults
+     * @return the data that was loaded, or null if requireComplete is true
+     *         and the file could not be read completely
+     */
+    private static DatasetState loadState(DoubleConsumer progressListener, StorageMode storage,
+            boolean requireComplete, long version, QueryExecutor executor) {
+        CovidDataLoader dataLoader = createLoader();
+        DatasetSnapshot snapshot = getSnapshot(dataLoader);
+
+        long startTime = System.nanoTime();
+        ColumnData snapshotData = snapshot == null ? null : snapshot.load(storage);
+        if (snapshotData != null) {
+            System.out.printf("Loaded %d records from snapshot in %.1f ms%n", snapshotData.size(),
+                    (System.nanoTime() - startTime) / 1e6);
+            progressListener.accept(1);
+            return createState(dataLoader, snapshotData, snapshot.getLoadedCsvSize(), version, executor);
+        }
+
+        // Parsing takes most of the time, sorting and saving the rest
+        dataLoader.setProgressListener(progress -> progressListener.accept(progress * 0.9));
+
+        // With a memory budget, the file is sorted on disk into the snapshot
+        long budget = getMemoryBudget();
+        if (budget > 0 && snapshot != null) {
+            ColumnData sortedRows = dataLoader.sortIntoSnapshot(snapshot, budget) ? snapshot.load(storage) : null;
+            if (sortedRows != null) {
+                progressListener.accept(1);
+                return createState(dataLoader, sortedRows, snapshot.getLoadedCsvSize(), version, executor);
+            }
+            System.out.println("Could not sort the csv file on disk, sorting it in memory");
+        }
+
+        ColumnBatch rows = dataLoader.loadSortedColumns();
+        if (requireComplete && !dataLoader.isLoadComplete()) {
+            return null;
+        }
+
+        // Only save complete loads (the loader returns what it has on failure)
+        boolean saved = snapshot != null && dataLoader.isLoadComplete()
+                && snapshot.save(rows, dataLoader.getParsedEnd());
+
+        // File-backed columns are used in place in the snapshot just saved
+        ColumnData storedRows = null;
+        if (storage == StorageMode.FILE_BACKED && saved) {
+            storedRows = snapshot.load(storage);
+        }
+        if (storedRows == null) {
+            storedRows = storage.store(rows);
+        }
+
+        progressListener.accept(1);
+        return createState(dataLoader, storedRows, dataLoader.getParsedEnd(), version, executor);
+    }
+
+    /**
+     * Creates the state holding loaded rows. Where the rows end in the csv
+     * file is remembered, so that rows added to the file later can be loaded
+     * on their own (see appendNewRows()).
+     * 
+     * @param dataLoader  the loader that the rows were loaded with
+     * @param rows        the rows, in date order
+     * @param csvEnd      the position in the csv file just after the rows, or
+     *                    -1 if the whole file was not loaded
+     * @param version     the version of the data
+     * @param executor    the executor of the previous data, whose settings are
+     *                    kept, or null for the defaults
+     * @return the state holding the rows
+     */
+    private static DatasetState createState(CovidDataLoader dataLoader, ColumnData rows, long csvEnd,
+            long version, QueryExecutor executor) {
+        long csvTailHash = -1;
+        if (csvEnd >= 0) {
+            try {
+                csvTailHash = dataLoader.getTailHash(csvEnd);
+            } catch (IOException | URISyntaxException e) {
+                csvEnd = -1;
+            }
+        }
+        return new DatasetState(new ColumnStore(rows), version, executor, csvEnd, csvTailHash);
+    }
+
+    /**
+     * @param dataLoader the loader that the data is loaded with
+     * @return the snapshot of the loader's csv file, or null if the csv file
+     *         could not be found or the data is split over several files
+     */
+    private static DatasetSnapshot getSnapshot(CovidDataLoader dataLoader) {
+        try {
+            List<File> files = dataLoader.getDataFiles();
+            return files.size() == 1 ? new DatasetSnapshot(files.get(0)) : null;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.out.println("Could not find the csv file for a snapshot: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return a loader of the csv files set with setDataLocation()
+     */
+    public static CovidDataLoader createLoader() {
+        synchronized (instanceLock) {
+            return dataLocation == null ? new CovidDataLoader() : new CovidDataLoader(dataLocation);
+        }
+    }
+
+    /**
+     * Sets where the csv files of the dataset are loaded from, instead of
+     * covid_london.csv. Used from the next time the dataset is loaded.
+     * 
+     * The data may be split over several files, e.g. one for each month or
+     * region. They are parsed at the same time and merged in date order (see
+     * CovidDataLoader.loadSortedColumns()). Snapshots and loading only the
+     * rows added to a file are only used with a single file; with several
+     * files, refresh() loads them all again.
+     * 
+     * @param location a csv file, a directory whose csv files are loaded, or a
+     *                 glob pattern of file names in a directory
      */
-    private Dataset() {
-        CovidDataLoader dataLoader = new CovidDataLoader();
-        data = dataLoader.load();
-        Collections.sort(data);
-        Collections.reverse(data);
+    public static void setDataLocation(String location) {
+        synchronized (instanceLock) {
+            dataLocation = location;
+        }
+    }
+
+    /**
+     * Sets where the columns of the dataset are held in memory. Only has an
+     * effect if called before the dataset is first loaded.
+     * 
+     * Off-heap storage keeps the columns out of the garbage collected heap, so
+     * that garbage collection pauses do not grow with the size of the data.
+     * File-backed storage also lets the operating system page the columns in
+     * from the snapshot file as they are used. Compressed storage keeps the
+     * columns on the heap in a fraction of the memory, decoding them as they
+     * are read.
+     * 
+     * @param storage where the columns are held
+     */
+    public static void setStorageMode(StorageMode storage) {
+        synchronized (instanceLock) {
+            storageMode = storage;
+        }
+    }
+
+    /**
+     * Sets the most memory that the rows of the csv file may take up while it
+     * is sorted, for files too large to sort in memory. Used from the next
+     * time the dataset is loaded.
+     * 
+     * With a budget, the file is sorted in runs that fit in the budget, which
+     * are spilled to temporary files and merged into the snapshot of the csv
+     * file (see CovidDataLoader.sortIntoSnapshot()). The rows are then read
+     * from the snapshot as set by setStorageMode(); with FILE_BACKED storage
+     * they are never held on the heap, and rows added to the csv file that
+     * cannot be added in place are loaded by reloading the file in the same
+     * way. The budget is not used when the data is split over several files.
+     * 
+     * @param bytes the most memory that the rows may take up, or 0 to sort the
+     *              whole file in memory
+     */
+    public static void setMemoryBudget(long bytes) {
+        synchronized (instanceLock) {
+            memoryBudget = bytes;
+        }
+    }
+
+    /**
+     * @return the most memory that rows may take up while the csv file is
+     *         sorted, or 0 if it is sorted in memory
+     */
+    private static long getMemoryBudget() {
+        synchronized (instanceLock) {
+            return memoryBudget;
+        }
+    }
+
+    /**
+     * @return where the columns of the dataset are held in memory
+     */
+    private static StorageMode getStorageMode() {
+        synchronized (instanceLock) {
+            return storageMode;
+        }
+    }
+
+    /**
+     * Sets whether the csv file is watched for changes, and the dataset
+     * reloaded when it changes (see DatasetWatcher). Watching is on by
+     * default. Only has an effect if called before the main window is shown.
+     * 
+     * @param watch whether the csv file is watched
+     */
+    public static void setWatchDataFile(boolean watch) {
+        synchronized (instanceLock) {
+            watchDataFile = watch;
+        }
+    }
+
+    /**
+     * @return whether the csv file is watched for changes
+     */
+    public static boolean isDataFileWatched() {
+        synchronized (instanceLock) {
+            return watchDataFile;
+        }
     }
 
     /**
@@ -43,44 +308,333 @@ public class Dataset {
      * 
      * @return the Dataset instance
      */
-    public static synchronized Dataset getInstance() {
-        // Create an instance of Dataset, if it does not exist yet
-        if (instance == null) {
-            instance = new Dataset();
+    public static Dataset getInstance() {
+        return getInstance(progress -> {
+        });
+    }
+
+    /**
+     * Returns the instance of the singleton Dataset object, loading it if it
+     * does not exist yet. Once it has been loaded, this does not lock.
+     * 
+     * @param progressListener told how much of the data has been loaded, if it
+     *                         is loaded by this call
+     * @return the Dataset instance
+     */
+    private static Dataset getInstance(DoubleConsumer progressListener) {
+        Dataset loaded = instance;
+        if (loaded != null) {
+            return loaded;
+        }
+
+        synchronized (instanceLock) {
+            // Create an instance of Dataset, if it does not exist yet
+            if (instance == null) {
+                instance = new Dataset(progressListener, storageMode);
+            }
+
+            return instance;
+        }
+    }
+
+    /**
+     * Starts loading the instance of the singleton Dataset object on a
+     * background thread, so that the calling thread (e.g. the JavaFX
+     * Application Thread) is not blocked. Only the first call starts a load;
+     * later calls return the same future.
+     * 
+     * @param progressListener told how much of the data has been loaded, as a
+     *                         fraction from 0 to 1 (called on the loading
+     *                         thread)
+     * @return a future that completes with the Dataset instance, or completes
+     *         exceptionally if no data could be loaded
+     */
+    public static synchronized CompletableFuture<Dataset> loadAsync(DoubleConsumer progressListener) {
+        if (loadingFuture == null) {
+            CompletableFuture<Dataset> future = new CompletableFuture<>();
+            loadingFuture = future;
+
+            Thread loadingThread = new Thread(() -> {
+                try {
+                    Dataset dataset = getInstance(progressListener);
+                    if (dataset.getColumns().size() == 0) {
+                        throw new IllegalStateException("No records could be loaded");
+                    }
+                    future.complete(dataset);
+                } catch (Throwable e) {
+                    // Includes errors such as running out of memory, so that
+                    // whoever is waiting for the dataset is always told
+                    future.completeExceptionally(e);
+                }
+            }, "Dataset loader");
+
+            // Loading should not keep the application running once it is closed
+            loadingThread.setDaemon(true);
+            loadingThread.start();
+        }
+
+        return loadingFuture;
+    }
+
+    /**
+     * Replaces the data with the given rows. Readers that are already running
+     * carry on with the old data, and every later call sees the new data. The
+     * results of queries over the old data are no longer used.
+     * 
+     * @param rows the new rows, in date order
+     */
+    public void replaceData(ColumnData rows) {
+        synchronized (updateLock) {
+            DatasetState previous = state;
+            state = new DatasetState(new ColumnStore(rows), previous.getVersion() + 1,
+                    previous.getQueryExecutor(), -1, -1);
+        }
+    }
+
+    /**
+     * Brings the data up to date with the csv file. Rows added to the end of
+     * the file are added on their own (see appendNewRows()), and if the file
+     * has changed in any other way it is loaded again (see reload()).
+     * 
+     * @return true if the data changed
+     */
+    public boolean refresh() {
+        int added = appendNewRows();
+        return added < 0 ? reload() : added > 0;
+    }
+
+    /**
+     * Loads the rows added to the end of the csv file since it was last
+     * loaded, and adds them to the data. Only the new part of the file is
+     * parsed. With HEAP storage, the new rows are added to the columns and
+     * indexes of the current data rather than building them again (see
+     * ColumnStore.withRowsAdded()), so the time taken depends on the number of
+     * new rows rather than on the size of the dataset.
+     * 
+     * A new row for the same date and borough as a row already loaded is a
+     * revision of it, e.g. corrected figures republished for an earlier day.
+     * It replaces the values of that row rather than being added, and only
+     * the indexes after the row are worked out again (see
+     * ColumnStore.withRowsRevised()).
+     * 
+     * @return the number of rows added or revised, or -1 if the csv file has
+     *         changed in some other way (or the data did not come from it), in
+     *         which case it should be reloaded
+     */
+    public int appendNewRows() {
+        synchronized (updateLock) {
+            DatasetState current = state;
+            long startTime = System.nanoTime();
+            CovidDataLoader dataLoader = createLoader();
+            ColumnBatch added;
+            long csvTailHash;
+            try {
+                if (!dataLoader.isUnchangedBefore(current.getCsvEnd(), current.getCsvTailHash())) {
+                    return -1;
+                }
+                added = dataLoader.loadColumnsFrom(current.getCsvEnd());
+                if (!dataLoader.isLoadComplete()) {
+                    return -1;
+                }
+                if (added.size() == 0) {
+                    return 0;
+                }
+                csvTailHash = dataLoader.getTailHash(dataLoader.getParsedEnd());
+            } catch (IOException | URISyntaxException | RuntimeException e) {
+                System.out.println("Could not load the new rows of the csv file: " + e);
+                return -1;
+            }
+
+            // Split the rows into revisions of rows already loaded and new rows
+            ColumnBatch sortedRows = added.sortedByDate();
+            ColumnStore columns = current.getColumns();
+            int[] existingRows = columns.findRows(sortedRows);
+            int revisedCount = 0;
+            for (int row : existingRows) {
+                if (row >= 0) {
+                    revisedCount++;
+                }
+            }
+            int[] revisedRows = new int[revisedCount];
+            int[] revisions = new int[revisedCount];
+            int[] newRows = new int[existingRows.length - revisedCount];
+            for (int row = 0, r = 0, n = 0; row < existingRows.length; row++) {
+                if (existingRows[row] >= 0) {
+                    revisedRows[r] = existingRows[row];
+                    revisions[r++] = row;
+                } else {
+                    newRows[n++] = row;
+                }
+            }
+            ColumnBatch revisedValues = sortedRows.select(revisions);
+            ColumnBatch addedRows = sortedRows.select(newRows);
+
+            if (columns.canAddRows(addedRows)) {
+                if (revisedCount > 0) {
+                    columns = columns.withRowsRevised(revisedRows, revisedValues);
+                }
+                if (addedRows.size() > 0) {
+                    columns = columns.withRowsAdded(addedRows);
+                }
+            } else {
+                // Copying every row onto the heap would not keep to the memory
+                // budget, so the file is sorted on disk again instead
+                if (getMemoryBudget() > 0) {
+                    return -1;
+                }
+
+                // Rows older than the newest rows, or columns held off the heap,
+                // are sorted in with the other rows and stored again
+                ColumnBatch merged = ColumnBatch.copyOf(columns.getRows());
+                for (int i = 0; i < revisedCount; i++) {
+                    merged.setValues(revisedRows[i], revisedValues, i);
+                }
+                merged.append(addedRows);
+                columns = new ColumnStore(getStorageMode().store(merged.sortedByDate()));
+            }
+
+            state = new DatasetState(columns, current.getVersion() + 1, current.getQueryExecutor(),
+                    dataLoader.getParsedEnd(), csvTailHash);
+            System.out.printf("Added %d new records and revised %d in %.1f ms%n", addedRows.size(), revisedCount,
+                    (System.nanoTime() - startTime) / 1e6);
+            return sortedRows.size();
+        }
+    }
+
+    /**
+     * Adds the rows that were added to the end of the csv file after the
+     * loaded rows, e.g. after its snapshot was saved or while it was being
+     * parsed, if there are any.
+     */
+    private void appendRowsAfterLoad() {
+        long csvEnd = state.getCsvEnd();
+        try {
+            if (csvEnd < 0 || createLoader().getDataFile().length() <= csvEnd) {
+                return;
+            }
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            return;
+        }
+        appendNewRows();
+    }
+
+    /**
+     * Loads the csv file again and replaces the data with it, e.g. after the
+     * file has been changed. The data can be read as normal while the file is
+     * loaded.
+     * 
+     * @return true if the data was replaced, false if the file could not be
+     *         loaded completely (the previous data is kept)
+     */
+    public boolean reload() {
+        long startTime = System.nanoTime();
+        synchronized (updateLock) {
+            DatasetState previous = state;
+            DatasetState reloaded;
+            try {
+                reloaded = loadState(progress -> {
+                }, getStorageMode(), true, previous.getVersion() + 1,
+                        previous.getQueryExecutor());
+            } catch (RuntimeException e) {
+                System.out.println("Could not reload the dataset: " + e);
+                return false;
+            }
+            if (reloaded == null || reloaded.getColumns().size() == 0) {
+                System.out.println("Could not reload the dataset, keeping the previous data");
+                return false;
+            }
+
+            state = reloaded;
+            System.out.printf("Reloaded %d records in %.1f ms%n", reloaded.getColumns().size(),
+                    (System.nanoTime() - startTime) / 1e6);
+            appendRowsAfterLoad();
+            return true;
         }
+    }
 
-        return instance;
+    /**
+     * @return the current version of the data, with its columns and records
+     */
+    public DatasetState getState() {
+        return state;
     }
 
     /**
-     * Returns a list of all CovidData objects in the dataset.
+     * Returns a list of all CovidData objects in the dataset, newest first.
+     * The records are created the first time this is called; code that only
+     * needs a few fields should use getCursor() instead.
      *
-     * @return ArrayList containing all CovidData objects in the dataset
+     * @return read-only List containing all CovidData objects in the dataset
      */
-    public ArrayList<CovidData> getData() {
-        return data;
+    public List<CovidData> getData() {
+        return state.getRecords();
     }
 
     /**
      * Returns a list of CovidData objects that fall within the specified date
      * range.
+     * 
+     * The data is sorted by date, so the range is found by binary search and
+     * returned as a read-only view of the columns (see RecordList) rather than
+     * a copy. Only the records that are read are created.
      *
      * @param fromDate The start date of the date range (inclusive)
      * @param toDate   The end date of the date range (inclusive)
-     * @return ArrayList of CovidData objects that fall within the specified date
-     *         range
+     * @return read-only List of CovidData objects that fall within the specified
+     *         date range
+     */
+    public List<CovidData> getDataInDateRange(LocalDate fromDate, LocalDate toDate) {
+        DatasetState current = state;
+        ColumnStore columns = current.getColumns();
+        int firstRow = columns.findFirstRowFrom(clampToEpochDay(fromDate));
+        int endRow = Math.max(firstRow, columns.findFirstRowAfter(clampToEpochDay(toDate)));
+
+        return new RecordList(columns, firstRow, endRow);
+    }
+
+    /**
+     * Returns a cursor over the rows that fall within the specified date range,
+     * newest first, which reads the columns without creating CovidData objects.
+     *
+     * @param fromDate The start date of the date range (inclusive)
+     * @param toDate   The end date of the date range (inclusive)
+     * @return a cursor over the rows in the date range
      */
-    public ArrayList<CovidData> getDataInDateRange(LocalDate fromDate, LocalDate toDate) {
-        List<CovidData> filteredData = data.stream()
-                .filter((covidData) -> isDateInRange(LocalDate.parse(covidData.getDate()), fromDate, toDate))
-                .collect(Collectors.toList());
+    public ColumnCursor getCursor(LocalDate fromDate, LocalDate toDate) {
+        return state.getColumns().cursor(clampToEpochDay(fromDate), clampToEpochDay(toDate));
+    }
+
+    /**
+     * @return the columns that the data is stored in
+     */
+    public ColumnStore getColumns() {
+        return state.getColumns();
+    }
+
+    /**
+     * @return the earliest date in the dataset
+     */
+    public LocalDate getFirstDate() {
+        return LocalDate.ofEpochDay(state.getColumns().getFirstEpochDay());
+    }
+
+    /**
+     * @return the latest date in the dataset
+     */
+    public LocalDate getLastDate() {
+        return LocalDate.ofEpochDay(state.getColumns().getLastEpochDay());
+    }
 
-        return new ArrayList<>(filteredData);
+    /**
+     * @return the date as an epoch day, limited to the range of an int
+     */
+    private static int clampToEpochDay(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
     }
 
     /**
      * Returns a list of CovidData objects that fall within the specified date range
-     * for a specified borough.
+     * for a specified borough. Only the rows of that borough are read.
      * 
      * @param boroughName The name of the borough to filter CovidData objects by
      * @param fromDate    The start date of the date range (inclusive)
@@ -89,41 +643,238 @@ public class Dataset {
      *         range
      */
     public ArrayList<CovidData> getBoroughData(String boroughName, LocalDate fromDate, LocalDate toDate) {
-        List<CovidData> filteredData = getDataInDateRange(fromDate, toDate).stream()
-                .filter(covidData -> covidData.getBorough().equals(boroughName))
-                .collect(Collectors.toList());
+        return getBoroughData(BoroughDictionary.getInstance().findId(boroughName), fromDate, toDate);
+    }
 
-        return new ArrayList<>(filteredData);
+    /**
+     * Returns a list of CovidData objects that fall within the specified date range
+     * for a borough, found by its id so that no name has to be looked up.
+     * 
+     * @param boroughId The id of the borough in the BoroughDictionary
+     * @param fromDate  The start date of the date range (inclusive)
+     * @param toDate    The end date of the date range (inclusive)
+     * @return ArrayList of CovidData objects for the specified borough and date
+     *         range
+     */
+    public ArrayList<CovidData> getBoroughData(int boroughId, LocalDate fromDate, LocalDate toDate) {
+        int fromDay = clampToEpochDay(fromDate);
+        int toDay = clampToEpochDay(toDate);
+
+        // Copied so that callers cannot change the cached list
+        List<Object> key = Arrays.asList("getBoroughData", boroughId, fromDay, toDay);
+        DatasetState current = state;
+        long currentVersion = current.getVersion();
+        ArrayList<CovidData> cached = queryCache.get(key, currentVersion);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
+        ColumnStore columns = current.getColumns();
+        ColumnCursor cursor = columns.getPartition(boroughId).cursor(fromDay, toDay);
+
+        // Only the borough's rows in the range are made into records
+        ArrayList<CovidData> filteredData = new ArrayList<>(cursor.size());
+        while (cursor.next()) {
+            filteredData.add(cursor.getRecord());
+        }
+
+        // The records are shared by the copies, so are only counted once
+        queryCache.put(key, new ArrayList<>(filteredData), 64 + (8L + RECORD_SIZE) * filteredData.size(),
+                currentVersion);
+        return filteredData;
+    }
+
+    /**
+     * Answers a query over the dataset. The fastest way to answer it (an
+     * index or a scan of the rows in range) is chosen by QueryPlan.choose().
+     * The results of recent queries are kept, so asking the same query again
+     * returns the same result without working it out.
+     * 
+     * @param query the rows to use, how to group them and the aggregates to
+     *              work out
+     * @return the aggregates of each group of rows
+     */
+    public QueryResult query(DatasetQuery query) {
+        DatasetState current = state;
+        long currentVersion = current.getVersion();
+        QueryResult result = queryCache.get(query, currentVersion);
+        if (result == null) {
+            result = current.getQueryExecutor().execute(query);
+            queryCache.put(query, result, result.getEstimatedSize(), currentVersion);
+        }
+        return result;
+    }
+
+    /**
+     * @return the cache of recent query results, with its hit, miss and
+     *         eviction counts
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
+    /**
+     * Returns the version of the data, which is increased whenever the data
+     * changes.
+     * 
+     * @return the version of the data
+     */
+    public long getVersion() {
+        return state.getVersion();
+    }
+
+    /**
+     * Sets the number of threads that large queries are split over. Queries
+     * over few rows always run on the calling thread.
+     * 
+     * @param parallelism the number of threads (1 to never run queries in
+     *                    parallel)
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public void setQueryParallelism(int parallelism) {
+        synchronized (updateLock) {
+            state.getQueryExecutor().setParallelism(parallelism);
+        }
+    }
+
+    /**
+     * Sets how many rows a query must scan before it is split over several
+     * threads (see setQueryParallelism()). Smaller queries run on the calling
+     * thread, as handing them to other threads costs more than it saves.
+     * 
+     * @param rows the fewest rows of a query run in parallel (0 to split every
+     *             scan)
+     * @throws IllegalArgumentException if rows is negative
+     */
+    public void setQueryParallelThreshold(int rows) {
+        synchronized (updateLock) {
+            state.getQueryExecutor().setParallelThreshold(rows);
+        }
+    }
+
+    /**
+     * Returns the rows of a borough, in date order.
+     * 
+     * @param boroughOrdinal the index of the borough in getBoroughs()
+     * @return the partition holding the borough's rows
+     */
+    public BoroughPartition getBoroughPartition(int boroughOrdinal) {
+        // The London boroughs have the same ids in the dictionary as in boroughs
+        return state.getColumns().getPartition(boroughOrdinal);
+    }
+
+    /**
+     * Adds up an additive field (new cases or new deaths) for a borough over a
+     * date range, using running totals so that the length of the range does
+     * not matter.
+     * 
+     * @param boroughOrdinal the index of the borough in getBoroughs()
+     * @param field          the field to add up (see DataField.isAdditive())
+     * @param fromDate       The start date of the date range (inclusive)
+     * @param toDate         The end date of the date range (inclusive)
+     * @return the sum of the non-null values in the date range (0 if none)
+     */
+    public long getSumInDateRange(int boroughOrdinal, DataField field, LocalDate fromDate, LocalDate toDate) {
+        return getBoroughPartition(boroughOrdinal).getSum(field, clampToEpochDay(fromDate), clampToEpochDay(toDate));
+    }
+
+    /**
+     * Checks whether a borough has any value for an additive field in a date
+     * range, as a sum of 0 may also mean that every value was null.
+     * 
+     * @param boroughOrdinal the index of the borough in getBoroughs()
+     * @param field          the field to check (see DataField.isAdditive())
+     * @param fromDate       The start date of the date range (inclusive)
+     * @param toDate         The end date of the date range (inclusive)
+     * @return true if the field is not null on at least one day in the range
+     */
+    public boolean hasValuesInDateRange(int boroughOrdinal, DataField field, LocalDate fromDate, LocalDate toDate) {
+        return getBoroughPartition(boroughOrdinal)
+                .getValueCount(field, clampToEpochDay(fromDate), clampToEpochDay(toDate)) > 0;
+    }
+
+    /**
+     * Returns the rolling sum and average of a field over the last few days,
+     * for every day of a borough. They are worked out in one pass over the
+     * borough's rows the first time they are asked for, and kept for reuse.
+     *
+     * @param boroughOrdinal the index of the borough in getBoroughs()
+     * @param field          the field to add up (see
+     *                       DataField.hasRollingWindows())
+     * @param days           the number of days in each window, e.g. 7 or 14
+     * @return the rolling window of each of the borough's rows, oldest first
+     * @throws IllegalArgumentException if the field has no rolling windows, or
+     *                                  days is less than 1
+     */
+    public RollingWindow getRollingWindow(int boroughOrdinal, DataField field, int days) {
+        return getBoroughPartition(boroughOrdinal).getRollingWindow(field, days);
+    }
+
+    /**
+     * Returns the most recent record of each borough within the date range in
+     * which the given field is not null. Each borough's record is found with a
+     * binary search, so this does not depend on the size of the dataset.
+     * 
+     * @param field    the field that must not be null
+     * @param fromDate The start date of the date range (inclusive)
+     * @param toDate   The end date of the date range (inclusive)
+     * @return an ArrayList of the most recent CovidData records for each borough
+     *         (in the order of getBoroughs()) that have a value for the field
+     */
+    public ArrayList<CovidData> getMostRecentData(DataField field, LocalDate fromDate, LocalDate toDate) {
+        int fromDay = clampToEpochDay(fromDate);
+        int toDay = clampToEpochDay(toDate);
+
+        // Only the record found for each borough is created
+        ColumnStore columns = state.getColumns();
+        ArrayList<CovidData> result = new ArrayList<>();
+        for (int i = 0; i < boroughs.length; i++) {
+            BoroughPartition partition = columns.getPartition(i);
+            int index = partition.findLastValidIndex(field, fromDay, toDay);
+            if (index >= 0) {
+                result.add(columns.getRecord(partition.getRow(index)));
+            }
+        }
+        return result;
     }
 
     /**
      * Returns an list of the most recent CovidData records for each borough,
      * filtered by the given function.
      * 
-     * @param covidData  the ArrayList of CovidData records to be filtered
+     * @param covidData  the List of CovidData records to be filtered
      * @param filterFunc the function to use as a filter (takes an argument of type
      *                   CovidData and returns an Integer)
      * @return an ArrayList of the most recent CovidData records for each borough
      *         that pass the given filter
      */
-    public ArrayList<CovidData> getMostRecentDataWithFilter(ArrayList<CovidData> covidData,
+    public ArrayList<CovidData> getMostRecentDataWithFilter(List<CovidData> covidData,
             Function<CovidData, Integer> filterFunc) {
-        List<CovidData> result = new ArrayList<>();
-
-        for (String boroughName : boroughs) {
-            // Data is already sorted, so iterates from newest to oldest data
-            for (CovidData record : covidData) {
-                // Ensures that the result function being used is not null nor 0
-                if (record.getBorough().equals(boroughName) &&
-                        filterFunc.apply(record) != null) {
-                    // Newest, non-null and non-zero record on filter function found
-                    result.add(record);
+        // The first matching record of each borough, found in a single pass
+        CovidData[] mostRecent = new CovidData[boroughs.length];
+        int found = 0;
+
+        // Data is already sorted, so iterates from newest to oldest data
+        for (CovidData record : covidData) {
+            int boroughId = record.getBoroughId();
+            // Ensures that the result function being used is not null
+            if (boroughId < boroughs.length && mostRecent[boroughId] == null &&
+                    filterFunc.apply(record) != null) {
+                // Newest, non-null record on filter function found
+                mostRecent[boroughId] = record;
+                if (++found == boroughs.length) {
                     break;
                 }
             }
         }
 
-        return new ArrayList<>(result);
+        ArrayList<CovidData> result = new ArrayList<>();
+        for (CovidData record : mostRecent) {
+            if (record != null) {
+                result.add(record);
+            }
+        }
+        return result;
     }
 
     /**
@@ -131,7 +882,7 @@ public class Dataset {
      *         dataset.
      */
     public String[] getBoroughs() {
-        return boroughs;
+        return boroughs.clone();
     }
 
     /**
@@ -172,7 +923,6 @@ public class Dataset {
      */
     public double getAverage(List<Number> field) {
         double sum = 0;
-        double average = 0;
         int count = 0; // count of non-null values
 
         for (Number value : field) {
@@ -183,6 +933,20 @@ public class Dataset {
             }
         }
 
+        return getAverage(sum, count);
+    }
+
+    /**
+     * Calculates an average from the sum and count of the non-null values, e.g.
+     * as worked out by a query.
+     * 
+     * @param sum   the sum of the values
+     * @param count the number of values
+     * @return the average of the values (to 2 d.p.), or 0 if there are none
+     */
+    public double getAverage(double sum, long count) {
+        double average = 0;
+
         // Check to ensure no division by zero error
         if (count > 0) {
             average = sum / count;
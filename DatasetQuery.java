@@ -0,0 +1,226 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Describes a question to ask the Dataset: which rows to use (a date range,
+ * a set of boroughs and conditions on the values), how to group them and
+ * which aggregates to work out for each group. For example, the total new
+ * deaths in each borough during January 2022:
+ *
+ * <pre>
+ * QueryResult result = dataset.query(new DatasetQuery(fromDate, toDate)
+ *         .groupBy(GroupBy.BOROUGH)
+ *         .aggregate(Aggregate.SUM, DataField.NEW_DEATHS));
+ * </pre>
+ *
+ * Queries cannot be changed; each method returns a new query.
+ *
+ * @version 2026.10.18
+ */
+public final class DatasetQuery {
+    private final int fromDay;
+    private final int toDay;
+
+    // Sorted ids of the boroughs to include, or null for every borough
+    private final int[] boroughIds;
+
+    private final List<ColumnPredicate> predicates;
+    private final GroupBy groupBy;
+    private final List<Aggregation> aggregations;
+
+    /**
+     * Creates a query over every borough in the date range, with no grouping
+     * and no aggregates yet.
+     *
+     * @param fromDate The start date of the date range (inclusive)
+     * @param toDate   The end date of the date range (inclusive)
+     */
+    public DatasetQuery(LocalDate fromDate, LocalDate toDate) {
+        this(toEpochDay(fromDate), toEpochDay(toDate), null, Collections.emptyList(), GroupBy.NONE,
+                Collections.emptyList());
+    }
+
+    private DatasetQuery(int fromDay, int toDay, int[] boroughIds, List<ColumnPredicate> predicates,
+            GroupBy groupBy, List<Aggregation> aggregations) {
+        this.fromDay = fromDay;
+        this.toDay = toDay;
+        this.boroughIds = boroughIds;
+        this.predicates = predicates;
+        this.groupBy = groupBy;
+        this.aggregations = aggregations;
+    }
+
+    /**
+     * @param boroughNames the names of the boroughs to include (unknown names
+     *                     match no rows)
+     * @return a copy of this query that only includes the given boroughs
+     */
+    public DatasetQuery forBoroughs(String... boroughNames) {
+        BoroughDictionary dictionary = BoroughDictionary.getInstance();
+        int[] ids = Arrays.stream(boroughNames)
+                .mapToInt(dictionary::findId)
+                .filter(id -> id >= 0)
+                .sorted()
+                .distinct()
+                .toArray();
+        return new DatasetQuery(fromDay, toDay, ids, predicates, groupBy, aggregations);
+    }
+
+    /**
+     * @param predicate a condition that rows must match
+     * @return a copy of this query that also requires the condition
+     */
+    public DatasetQuery where(ColumnPredicate predicate) {
+        List<ColumnPredicate> newPredicates = new ArrayList<>(predicates);
+        newPredicates.add(predicate);
+        return new DatasetQuery(fromDay, toDay, boroughIds, Collections.unmodifiableList(newPredicates), groupBy,
+                aggregations);
+    }
+
+    /**
+     * @param groupBy how to group the rows
+     * @return a copy of this query that groups its rows in the given way
+     */
+    public DatasetQuery groupBy(GroupBy groupBy) {
+        return new DatasetQuery(fromDay, toDay, boroughIds, predicates, groupBy, aggregations);
+    }
+
+    /**
+     * Adds an aggregate to work out for each group. The results of a group
+     * hold the aggregates in the order they were added.
+     *
+     * @param aggregate how to combine the values
+     * @param field     the field whose values are combined
+     * @return a copy of this query that also works out the aggregate
+     */
+    public DatasetQuery aggregate(Aggregate aggregate, DataField field) {
+        List<Aggregation> newAggregations = new ArrayList<>(aggregations);
+        newAggregations.add(new Aggregation(aggregate, field));
+        return new DatasetQuery(fromDay, toDay, boroughIds, predicates, groupBy,
+                Collections.unmodifiableList(newAggregations));
+    }
+
+    /**
+     * @return the start of the date range, as an epoch day
+     */
+    public int getFromDay() {
+        return fromDay;
+    }
+
+    /**
+     * @return the end of the date range, as an epoch day
+     */
+    public int getToDay() {
+        return toDay;
+    }
+
+    /**
+     * @param boroughId the id of a borough
+     * @return true if the query includes the borough's rows
+     */
+    public boolean includesBorough(int boroughId) {
+        return boroughIds == null || Arrays.binarySearch(boroughIds, boroughId) >= 0;
+    }
+
+    /**
+     * @return the conditions that rows must match
+     */
+    public List<ColumnPredicate> getPredicates() {
+        return predicates;
+    }
+
+    /**
+     * @return how the rows are grouped
+     */
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @return the aggregates worked out for each group, in order
+     */
+    public List<Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DatasetQuery)) {
+            return false;
+        }
+        DatasetQuery query = (DatasetQuery) other;
+        return fromDay == query.fromDay && toDay == query.toDay && Arrays.equals(boroughIds, query.boroughIds)
+                && predicates.equals(query.predicates) && groupBy == query.groupBy
+                && aggregations.equals(query.aggregations);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(fromDay, toDay, Arrays.hashCode(boroughIds), predicates, groupBy, aggregations);
+    }
+
+    @Override
+    public String toString() {
+        return "DatasetQuery[" + LocalDate.ofEpochDay(fromDay) + " to " + LocalDate.ofEpochDay(toDay)
+                + (boroughIds == null ? "" : ", boroughs " + Arrays.toString(boroughIds))
+                + (predicates.isEmpty() ? "" : ", where " + predicates)
+                + ", group by " + groupBy + ", " + aggregations + "]";
+    }
+
+    /**
+     * @return the date as an epoch day, limited to the range of an int
+     */
+    private static int toEpochDay(LocalDate date) {
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    /**
+     * One aggregate of a query: how to combine the values, and which field.
+     */
+    public static final class Aggregation {
+        private final Aggregate aggregate;
+        private final DataField field;
+
+        private Aggregation(Aggregate aggregate, DataField field) {
+            this.aggregate = Objects.requireNonNull(aggregate);
+            this.field = Objects.requireNonNull(field);
+        }
+
+        /**
+         * @return how the values are combined
+         */
+        public Aggregate getAggregate() {
+            return aggregate;
+        }
+
+        /**
+         * @return the field whose values are combined
+         */
+        public DataField getField() {
+            return field;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Aggregation)) {
+                return false;
+            }
+            Aggregation aggregation = (Aggregation) other;
+            return aggregate == aggregation.aggregate && field == aggregation.field;
+        }
+
+        @Override
+        public int hashCode() {
+            return aggregate.hashCode() * 31 + field.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return aggregate + "(" + field + ")";
+        }
+    }
+}
@@ -0,0 +1,286 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A binary, column-by-column copy of the sorted dataset, saved next to the
+ * csv file it was loaded from. Reading the snapshot is a memory-map and a few
+ * bulk copies, so later launches neither parse the csv nor sort the records.
+ *
+ * The snapshot remembers how much of the csv file it holds the rows of (the
+ * position just after the last row that was parsed), with the last modified
+ * time of the file and the CRC32 hash of the bytes up to that position. It is
+ * only used while the csv file is at least that long and either has the same
+ * length and modified time, or the same hash of those bytes. Rows added to the
+ * end of the file after the snapshot was saved are then loaded on their own
+ * (see Dataset.appendNewRows()).
+ *
+ * Layout (all numbers little endian):
+ * magic, version, csv end, csv modified time, csv hash, row count,
+ * borough count, borough names (length-prefixed UTF-8), then the columns
+ * as written by ColumnBatch.writeTo().
+ *
+ * @version 2026.10.18
+ */
+public class DatasetSnapshot {
+    // "CVDS", marks the file as a snapshot
+    private static final int MAGIC = 0x43564453;
+
+    // Increased whenever the layout of the file changes
+    private static final int VERSION = 2;
+
+    private final File csvFile;
+    private final File snapshotFile;
+
+    // Position in the csv file just after the rows of the last loaded
+    // snapshot (-1 if none has been loaded)
+    private long loadedCsvSize = -1;
+
+    /**
+     * @param csvFile the csv file that the snapshot is a copy of
+     */
+    public DatasetSnapshot(File csvFile) {
+        this.csvFile = csvFile;
+        String name = csvFile.getName().replaceFirst("\\.csv$", "");
+        this.snapshotFile = new File(csvFile.getParentFile(), name + ".snapshot");
+    }
+
+    /**
+     * Reads the snapshot, if there is one and it is still up to date with the
+     * csv file.
+     *
+     * With FILE_BACKED storage the columns are used in place in the mapped
+     * file, and with OFF_HEAP storage they are copied to direct memory, unless
+     * the borough ids have changed since the snapshot was saved. Otherwise the
+     * columns are read onto the heap and then stored as asked (see
+     * StorageMode.store()).
+     *
+     * @param storage where the rows should be held in memory
+     * @return the rows of the snapshot, in the order they were saved, or null if
+     *         there is no valid snapshot
+     */
+    public ColumnData load(StorageMode storage) {
+        if (!snapshotFile.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshotFile.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                System.out.println("Ignoring snapshot with an unknown format: " + snapshotFile);
+                return null;
+            }
+
+            long csvEnd = buffer.getLong();
+            long csvModified = buffer.getLong();
+            long csvHash = buffer.getLong();
+            if (!isUpToDate(csvEnd, csvModified, csvHash)) {
+                System.out.println("Ignoring snapshot as the csv file has changed: " + snapshotFile);
+                return null;
+            }
+
+            int rows = buffer.getInt();
+            int boroughCount = buffer.getInt();
+            loadedCsvSize = csvEnd;
+
+            // Borough ids may differ between launches, so they are mapped by name
+            BoroughDictionary dictionary = BoroughDictionary.getInstance();
+            int[] boroughIds = new int[boroughCount];
+            for (int i = 0; i < boroughCount; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                boroughIds[i] = dictionary.getId(new String(name, StandardCharsets.UTF_8));
+            }
+
+            boolean offHeap = storage == StorageMode.OFF_HEAP || storage == StorageMode.FILE_BACKED;
+            if (offHeap && isIdentity(boroughIds)) {
+                OffHeapColumnBatch mapped = OffHeapColumnBatch.wrap(buffer, rows);
+                return storage == StorageMode.FILE_BACKED ? mapped : OffHeapColumnBatch.copyOf(mapped);
+            }
+
+            return storage.store(ColumnBatch.readFrom(buffer, rows, boroughIds));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Could not read snapshot: " + e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the position in the csv file just after the rows of the last
+     *         snapshot read by load() (-1 if none has been read), from which
+     *         any rows added since it was saved can be loaded
+     */
+    public long getLoadedCsvSize() {
+        return loadedCsvSize;
+    }
+
+    /**
+     * @return true if every stored borough id is still the id of its borough
+     */
+    private static boolean isIdentity(int[] boroughIds) {
+        for (int i = 0; i < boroughIds.length; i++) {
+            if (boroughIds[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Saves the rows as the snapshot of the csv file. The snapshot is written to
+     * a temporary file first, so that a half-written snapshot is never read.
+     *
+     * @param batch  the rows to save, in the order they should be loaded
+     * @param csvEnd the position in the csv file just after the rows, e.g.
+     *               CovidDataLoader.getParsedEnd()
+     * @return true if the snapshot was saved
+     */
+    public boolean save(ColumnData batch, long csvEnd) {
+        return save(batch.size(), batch.getByteSize(), batch::writeTo, csvEnd);
+    }
+
+    /**
+     * Merges runs of sorted rows that were spilled to disk into the snapshot of
+     * the csv file. The rows are merged straight into the mapped snapshot
+     * file, so they are never all held on the heap (see SpilledRuns.mergeTo()).
+     *
+     * @param runs   the runs to merge, in the order that the csv file was read
+     * @param csvEnd the position in the csv file just after the rows of the
+     *               runs
+     * @return true if the snapshot was saved
+     */
+    public boolean save(SpilledRuns runs, long csvEnd) {
+        return save(runs.size(), runs.getByteSize(), runs::mergeTo, csvEnd);
+    }
+
+    /**
+     * Writes the header and then the columns of the snapshot.
+     *
+     * @param rows        the number of rows
+     * @param columnBytes the number of bytes taken by the columns
+     * @param columns     writes the columns in the layout of
+     *                    ColumnBatch.writeTo()
+     * @param csvEnd      the position in the csv file just after the rows
+     * @return true if the snapshot was saved
+     */
+    private boolean save(int rows, long columnBytes, Consumer<ByteBuffer> columns, long csvEnd) {
+        Path temporaryFile = new File(snapshotFile.getPath() + ".tmp").toPath();
+        BoroughDictionary dictionary = BoroughDictionary.getInstance();
+
+        try {
+            byte[][] boroughNames = new byte[dictionary.size()][];
+            long headerSize = 4 * Integer.BYTES + 3 * Long.BYTES;
+            for (int i = 0; i < boroughNames.length; i++) {
+                boroughNames[i] = dictionary.getName(i).getBytes(StandardCharsets.UTF_8);
+                headerSize += Integer.BYTES + boroughNames[i].length;
+            }
+
+            // Read before hashing, so that a change made while hashing makes the snapshot stale.
+            // Only the parsed bytes are hashed, as rows may have been added after them since.
+            long csvModified = csvFile.lastModified();
+            long csvHash = hashCsvFile(csvEnd);
+
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                        headerSize + columnBytes);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+                buffer.putInt(MAGIC);
+                buffer.putInt(VERSION);
+                buffer.putLong(csvEnd);
+                buffer.putLong(csvModified);
+                buffer.putLong(csvHash);
+                buffer.putInt(rows);
+                buffer.putInt(boroughNames.length);
+                for (byte[] name : boroughNames) {
+                    buffer.putInt(name.length);
+                    buffer.put(name);
+                }
+
+                columns.accept(buffer);
+                buffer.force();
+            }
+
+            Files.move(temporaryFile, snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("Saved snapshot of " + rows + " records to " + snapshotFile);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // The snapshot is only a speed up, so the application carries on without it
+            System.out.println("Could not save snapshot: " + e);
+            temporaryFile.toFile().delete();
+            return false;
+        }
+    }
+
+    /**
+     * Checks the csv file against the details stored in the snapshot. The hash
+     * is only worked out when the length or modified time differs (e.g. rows
+     * were added, or the file was copied), as it means reading the csv file up
+     * to the end of the snapshot's rows.
+     *
+     * @return true if the csv file still starts with the rows of the snapshot
+     */
+    private boolean isUpToDate(long csvEnd, long csvModified, long csvHash) throws IOException {
+        long csvSize = csvFile.length();
+        if (csvSize == csvEnd && csvFile.lastModified() == csvModified) {
+            return true;
+        }
+        return csvSize >= csvEnd && hashCsvFile(csvEnd) == csvHash && endsWithLineBreak(csvEnd);
+    }
+
+    /**
+     * @param end a position in the csv file
+     * @return true if the position is the start of the file, the end of the
+     *         file or just after a line break, so that a last line without a
+     *         line break has not been added to since
+     * @throws IOException if the csv file could not be read
+     */
+    private boolean endsWithLineBreak(long end) throws IOException {
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            if (end == 0 || end >= channel.size()) {
+                return true;
+            }
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            channel.read(lastByte, end - 1);
+            return lastByte.get(0) == '\n';
+        }
+    }
+
+    /**
+     * @param end the position to hash up to
+     * @return the CRC32 hash of the bytes of the csv file before the position
+     * @throws IOException if the csv file could not be read, or is shorter
+     */
+    private long hashCsvFile(long end) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel channel = FileChannel.open(csvFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < end) {
+                throw new IOException("The csv file is shorter than its parsed rows: " + csvFile);
+            }
+
+            long position = 0;
+            long size = end;
+            while (position < size) {
+                long length = Math.min(size - position, Integer.MAX_VALUE);
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                crc.update(buffer);
+                position += length;
+            }
+        }
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One version of the data served by Dataset: the columns, the executor that
+ * answers queries over them, and the CovidData records of getData(). A state
+ * is never changed once created. New data is published by Dataset as a new
+ * state, so code that reads a state sees the same data from start to finish,
+ * even if the data is replaced while it runs.
+ *
+ * @version 2026.10.18
+ */
+public class DatasetState {
+    private final ColumnStore columns;
+    private final QueryExecutor queryExecutor;
+    private final long version;
+
+    // Position in the csv file just after the rows of this state, and the hash
+    // of the bytes before it (see CovidDataLoader.getTailHash()), or -1 if the
+    // rows did not come straight from the file
+    private final long csvEnd;
+    private final long csvTailHash;
+
+    // CovidData records, newest first, only created when first asked for
+    private volatile List<CovidData> records = null;
+
+    /**
+     * @param columns     the columns of the data
+     * @param version     the version of the data
+     * @param executor    an executor whose settings (e.g. its parallelism)
+     *                    are used for queries over the columns, or null for
+     *                    the default settings
+     * @param csvEnd      the position in the csv file just after the rows, or
+     *                    -1 if they did not come straight from the file
+     * @param csvTailHash the hash of the bytes before csvEnd
+     */
+    DatasetState(ColumnStore columns, long version, QueryExecutor executor, long csvEnd, long csvTailHash) {
+        this.columns = columns;
+        this.queryExecutor = executor == null ? new QueryExecutor(columns) : executor.forStore(columns);
+        this.version = version;
+        this.csvEnd = csvEnd;
+        this.csvTailHash = csvTailHash;
+    }
+
+    /**
+     * @return the columns that the data is stored in
+     */
+    public ColumnStore getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the executor that answers queries over the columns
+     */
+    public QueryExecutor getQueryExecutor() {
+        return queryExecutor;
+    }
+
+    /**
+     * @return the version of the data, higher for newer data
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the position in the csv file just after the rows of this state,
+     *         or -1 if the rows did not come straight from the file
+     */
+    public long getCsvEnd() {
+        return csvEnd;
+    }
+
+    /**
+     * @return the hash of the bytes of the csv file just before getCsvEnd()
+     */
+    public long getCsvTailHash() {
+        return csvTailHash;
+    }
+
+    /**
+     * Returns a CovidData record for every row, newest first. The records are
+     * created the first time this is called.
+     *
+     * @return a read-only list of the records
+     */
+    public List<CovidData> getRecords() {
+        List<CovidData> result = records;
+        if (result == null) {
+            synchronized (this) {
+                result = records;
+                if (result == null) {
+                    ArrayList<CovidData> list = new ArrayList<>(columns.size());
+                    ColumnCursor cursor = columns.cursor();
+                    while (cursor.next()) {
+                        list.add(cursor.getRecord());
+                    }
+                    result = Collections.unmodifiableList(list);
+                    records = result;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -3,9 +3,19 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.time.LocalDate;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Provides test cases for the singleton Dataset clas that provides access to
@@ -17,7 +27,7 @@ import java.util.ArrayList;
 public class DatasetTest {
     Dataset dataset;
     LocalDate fromDate, toDate;
-    ArrayList<CovidData> data;
+    List<CovidData> data;
 
     /**
      * Sets up the test fixture.
@@ -80,12 +90,27 @@ public class DatasetTest {
      */
     @Test
     public void testGetDataInDateRange() {
-        ArrayList<CovidData> dataInRange = dataset.getDataInDateRange(fromDate, toDate);
+        List<CovidData> dataInRange = dataset.getDataInDateRange(fromDate, toDate);
 
         for (CovidData covidData : dataInRange) {
             // Data returned must be in range specified
             assertTrue(dataset.isDateInRange(LocalDate.parse(covidData.getDate()), fromDate, toDate));
         }
+
+        // No record in range may be left out, and they are in the same order
+        List<CovidData> expected = data.stream()
+                .filter(covidData -> dataset.isDateInRange(covidData.getLocalDate(), fromDate, toDate))
+                .collect(Collectors.toList());
+        assertEquals(expected.size(), dataInRange.size());
+        assertSameRecords(expected, dataInRange);
+        assertSameRecords(expected.subList(10, 20), dataInRange.subList(10, 20));
+
+        // The range is a view of the dataset, so it cannot be changed
+        assertThrows(UnsupportedOperationException.class, () -> dataInRange.clear());
+
+        // Ranges outside the dataset or backwards ranges are empty
+        assertTrue(dataset.getDataInDateRange(LocalDate.parse("1900-01-01"), LocalDate.parse("1900-12-31")).isEmpty());
+        assertTrue(dataset.getDataInDateRange(toDate, fromDate).isEmpty());
     }
 
     /**
@@ -106,8 +131,34 @@ public class DatasetTest {
     }
 
     /**
-     * Tests that getMostRecentDataWithFilter() returns only the most recent records
-     * that match the given filter.
+     * Tests whether getSumInDateRange() and hasValuesInDateRange() agree with
+     * adding up the records of each borough one by one.
+     */
+    @Test
+    public void testGetSumInDateRange() {
+        String[] boroughs = dataset.getBoroughs();
+        for (int i = 0; i < boroughs.length; i++) {
+            long expectedSum = 0;
+            boolean expectedHasValues = false;
+            for (CovidData record : dataset.getBoroughData(boroughs[i], fromDate, toDate)) {
+                if (record.getNewDeaths() != null) {
+                    expectedSum += record.getNewDeaths();
+                    expectedHasValues = true;
+                }
+            }
+
+            assertEquals(expectedSum, dataset.getSumInDateRange(i, DataField.NEW_DEATHS, fromDate, toDate));
+            assertEquals(expectedHasValues, dataset.hasValuesInDateRange(i, DataField.NEW_DEATHS, fromDate, toDate));
+        }
+
+        // Running totals only make sense for daily counts
+        assertThrows(IllegalArgumentException.class,
+                () -> dataset.getSumInDateRange(0, DataField.TOTAL_DEATHS, fromDate, toDate));
+    }
+
+    /**
+     * Tests whether getMostRecentDataWithFilter() returns only the most recent
+     * records that match the given filter.
      */
     @Test
     public void testGetMostRecentDataWithFilter() {
@@ -136,6 +187,115 @@ public class DatasetTest {
         }
     }
 
+    /**
+     * Tests whether getMostRecentData() finds the same records as filtering the
+     * date range with getMostRecentDataWithFilter().
+     */
+    @Test
+    public void testGetMostRecentData() {
+        List<CovidData> dataInRange = dataset.getDataInDateRange(fromDate, toDate);
+
+        for (DataField field : DataField.values()) {
+            assertSameRecords(dataset.getMostRecentDataWithFilter(dataInRange, field::getValue),
+                    dataset.getMostRecentData(field, fromDate, toDate));
+        }
+
+        // No records outside the dataset
+        assertTrue(dataset.getMostRecentData(DataField.TOTAL_DEATHS, LocalDate.parse("1900-01-01"),
+                LocalDate.parse("1900-12-31")).isEmpty());
+    }
+
+    /**
+     * Tests whether query() groups and aggregates rows the same way as working
+     * through the records by hand, and whether it uses the indexes when it can.
+     */
+    @Test
+    public void testQuery() {
+        // Totals per borough are answered from the running totals
+        QueryResult deaths = dataset.query(new DatasetQuery(fromDate, toDate)
+                .groupBy(GroupBy.BOROUGH)
+                .aggregate(Aggregate.SUM, DataField.NEW_DEATHS));
+        assertEquals(QueryPlan.INDEX, deaths.getPlan());
+        for (QueryResult.Group borough : deaths.getGroups()) {
+            int i = borough.getKey();
+            if (dataset.hasValuesInDateRange(i, DataField.NEW_DEATHS, fromDate, toDate)) {
+                assertEquals(dataset.getSumInDateRange(i, DataField.NEW_DEATHS, fromDate, toDate),
+                        borough.getValue(0).longValue());
+            } else {
+                assertNull(borough.getValue(0));
+            }
+        }
+
+        // Conditions on values need a scan
+        QueryResult busyDays = dataset.query(new DatasetQuery(fromDate, toDate)
+                .forBoroughs("Brent")
+                .where(ColumnPredicate.atLeast(DataField.NEW_CASES, 100))
+                .groupBy(GroupBy.DAY)
+                .aggregate(Aggregate.MAX, DataField.NEW_CASES)
+                .aggregate(Aggregate.COUNT, DataField.NEW_CASES));
+        assertEquals(QueryPlan.SCAN, busyDays.getPlan());
+
+        int expectedDays = 0;
+        for (CovidData record : dataset.getBoroughData("Brent", fromDate, toDate)) {
+            if (record.getNewCases() != null && record.getNewCases() >= 100) {
+                expectedDays++;
+            }
+        }
+        assertEquals(expectedDays, busyDays.getGroups().size());
+        for (QueryResult.Group day : busyDays.getGroups()) {
+            assertTrue(dataset.isDateInRange(day.getDate(), fromDate, toDate));
+            assertTrue(day.getValue(0) >= 100);
+            assertEquals(1, day.getValue(1).intValue());
+        }
+    }
+
+    /**
+     * Tests whether queries grouped by week or month, which are answered from
+     * the rollups, agree with the daily records, including for the weeks or
+     * months that are only partly in the date range.
+     */
+    @Test
+    public void testQueryRollups() {
+        LocalDate from = LocalDate.parse("2021-11-15");
+        LocalDate to = LocalDate.parse("2022-02-10");
+
+        for (GroupBy groupBy : new GroupBy[] { GroupBy.WEEK, GroupBy.MONTH }) {
+            QueryResult result = dataset.query(new DatasetQuery(from, to)
+                    .forBoroughs("Brent")
+                    .groupBy(groupBy)
+                    .aggregate(Aggregate.MAX, DataField.NEW_CASES)
+                    .aggregate(Aggregate.SUM, DataField.NEW_DEATHS)
+                    .aggregate(Aggregate.LAST, DataField.TOTAL_CASES));
+            assertEquals(QueryPlan.ROLLUP, result.getPlan());
+
+            for (QueryResult.Group group : result.getGroups()) {
+                int maxCases = Integer.MIN_VALUE;
+                int sumDeaths = 0;
+                Integer lastTotalCases = null;
+
+                // Records are newest first, so the first total cases found is the last one
+                for (CovidData record : dataset.getBoroughData("Brent", from, to)) {
+                    if (groupBy.getKey(record.getEpochDay(), record.getBoroughId()) != group.getKey()) {
+                        continue;
+                    }
+                    if (record.getNewCases() != null) {
+                        maxCases = Math.max(maxCases, record.getNewCases());
+                    }
+                    if (record.getNewDeaths() != null) {
+                        sumDeaths += record.getNewDeaths();
+                    }
+                    if (lastTotalCases == null) {
+                        lastTotalCases = record.getTotalCases();
+                    }
+                }
+
+                assertEquals(maxCases, group.getValue(0).intValue());
+                assertEquals(sumDeaths, group.getValue(1).intValue());
+                assertEquals(lastTotalCases.intValue(), group.getValue(2).intValue());
+            }
+        }
+    }
+
     /**
      * Tests whether getBoroughs() is returning the expected borough names or not.
      */
@@ -237,4 +397,553 @@ public class DatasetTest {
 
         assertEquals(2.5, dataset.getAverage(dataField));
     }
+
+    /**
+     * Tests whether repeated queries are answered from the query cache.
+     */
+    @Test
+    public void testQueryCache() {
+        QueryCache cache = dataset.getQueryCache();
+        DatasetQuery query = new DatasetQuery(LocalDate.of(2021, 3, 1), LocalDate.of(2021, 3, 31))
+                .groupBy(GroupBy.BOROUGH)
+                .aggregate(Aggregate.SUM, DataField.NEW_DEATHS);
+
+        QueryResult first = dataset.query(query);
+        long hits = cache.getHitCount();
+        QueryResult second = dataset.query(new DatasetQuery(LocalDate.of(2021, 3, 1), LocalDate.of(2021, 3, 31))
+                .groupBy(GroupBy.BOROUGH)
+                .aggregate(Aggregate.SUM, DataField.NEW_DEATHS));
+        assertSame(first, second);
+        assertEquals(hits + 1, cache.getHitCount());
+
+        // A cached list of borough data cannot be changed through the copy returned
+        ArrayList<CovidData> boroughData = dataset.getBoroughData("Brent", LocalDate.of(2021, 3, 1),
+                LocalDate.of(2021, 3, 31));
+        int size = boroughData.size();
+        boroughData.clear();
+        assertEquals(size, dataset.getBoroughData("Brent", LocalDate.of(2021, 3, 1),
+                LocalDate.of(2021, 3, 31)).size());
+        assertEquals(hits + 2, cache.getHitCount());
+    }
+
+    /**
+     * Tests whether the rolling sums and averages agree with adding up each
+     * window.
+     */
+    @Test
+    public void testGetRollingWindow() {
+        int brent = BoroughDictionary.getInstance().findId("Brent");
+        for (int days : new int[] { 7, 14 }) {
+            RollingWindow window = dataset.getRollingWindow(brent, DataField.NEW_CASES, days);
+            BoroughPartition partition = dataset.getBoroughPartition(brent);
+            assertEquals(partition.size(), window.size());
+
+            for (int i = 0; i < window.size(); i += 37) {
+                LocalDate date = LocalDate.ofEpochDay(window.getEpochDay(i));
+                long sum = 0;
+                int count = 0;
+                for (CovidData record : dataset.getBoroughData("Brent", date.minusDays(days - 1), date)) {
+                    if (record.getNewCases() != null) {
+                        sum += record.getNewCases();
+                        count++;
+                    }
+                }
+
+                assertEquals(sum, window.getSum(i));
+                assertEquals(count, window.getCount(i));
+                if (count == 0) {
+                    assertNull(window.getAverage(i));
+                } else {
+                    assertEquals((double) sum / count, window.getAverage(i).doubleValue());
+                }
+            }
+        }
+
+        // Windows are kept for reuse, and running totals have none
+        assertSame(dataset.getRollingWindow(brent, DataField.NEW_CASES, 7),
+                dataset.getRollingWindow(brent, DataField.NEW_CASES, 7));
+        assertThrows(IllegalArgumentException.class,
+                () -> dataset.getRollingWindow(brent, DataField.TOTAL_CASES, 7));
+    }
+
+    /**
+     * Tests whether boroughs without rows share one empty partition.
+     */
+    @Test
+    public void testGetEmptyPartition() {
+        int count = dataset.getBoroughs().length;
+        BoroughPartition empty = dataset.getBoroughPartition(count + 10);
+        assertEquals(0, empty.size());
+        assertSame(empty, dataset.getBoroughPartition(-1));
+        assertSame(empty, dataset.getBoroughPartition(Integer.MAX_VALUE));
+        assertEquals(0, empty.getSum(DataField.NEW_CASES, 0, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Tests whether queries give the same results over columns held off the
+     * heap or compressed.
+     */
+    @Test
+    public void testColumnStorage() {
+        ColumnStore heapStore = dataset.getColumns();
+        DatasetQuery query = new DatasetQuery(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 6, 30))
+                .where(ColumnPredicate.atLeast(DataField.NEW_CASES, 0))
+                .groupBy(GroupBy.MONTH)
+                .aggregate(Aggregate.SUM, DataField.NEW_CASES)
+                .aggregate(Aggregate.MAX, DataField.PARKS_GMR)
+                .aggregate(Aggregate.LAST, DataField.TOTAL_DEATHS);
+        List<QueryResult.Group> heapGroups = new QueryExecutor(heapStore).execute(query).getGroups();
+
+        for (ColumnData rows : new ColumnData[] { OffHeapColumnBatch.copyOf(heapStore.getRows()),
+                CompressedColumnBatch.compress(heapStore.getRows()) }) {
+            ColumnStore store = new ColumnStore(rows);
+            assertEquals(heapStore.size(), store.size());
+
+            for (int row = 0; row < heapStore.size(); row += 101) {
+                assertEquals(heapStore.getEpochDay(row), store.getEpochDay(row));
+                assertEquals(heapStore.getBoroughId(row), store.getBoroughId(row));
+                for (DataField field : DataField.values()) {
+                    assertEquals(heapStore.isNull(row, field), store.isNull(row, field));
+                    assertEquals(heapStore.getInt(row, field), store.getInt(row, field));
+                }
+            }
+
+            List<QueryResult.Group> groups = new QueryExecutor(store).execute(query).getGroups();
+            assertEquals(heapGroups.size(), groups.size());
+            for (int i = 0; i < heapGroups.size(); i++) {
+                assertEquals(heapGroups.get(i).getKey(), groups.get(i).getKey());
+                for (int j = 0; j < 3; j++) {
+                    assertEquals(heapGroups.get(i).getValue(j).longValue(), groups.get(i).getValue(j).longValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests whether a scan split over several threads, with its partial
+     * aggregates merged, gives the same results as scanning on one thread.
+     */
+    @Test
+    public void testParallelQuery() {
+        DatasetQuery query = new DatasetQuery(LocalDate.of(2020, 1, 1), LocalDate.of(2023, 12, 31))
+                .where(ColumnPredicate.atLeast(DataField.NEW_CASES, 0))
+                .groupBy(GroupBy.MONTH)
+                .aggregate(Aggregate.SUM, DataField.NEW_CASES)
+                .aggregate(Aggregate.AVG, DataField.NEW_CASES)
+                .aggregate(Aggregate.MIN, DataField.PARKS_GMR)
+                .aggregate(Aggregate.MAX, DataField.PARKS_GMR)
+                .aggregate(Aggregate.COUNT, DataField.NEW_DEATHS)
+                .aggregate(Aggregate.LAST, DataField.TOTAL_DEATHS);
+
+        QueryExecutor sequential = new QueryExecutor(dataset.getColumns());
+        sequential.setParallelism(1);
+        QueryExecutor parallel = new QueryExecutor(dataset.getColumns());
+        parallel.setParallelism(4);
+        parallel.setParallelThreshold(0);
+        assertEquals(parallel.getParallelism(), parallel.forStore(dataset.getColumns()).getParallelism());
+        assertEquals(0, parallel.forStore(dataset.getColumns()).getParallelThreshold());
+
+        QueryResult expected = sequential.execute(query);
+        QueryResult result = parallel.execute(query);
+        assertEquals(QueryPlan.SCAN, result.getPlan());
+        assertFalse(expected.getGroups().isEmpty());
+        assertEquals(expected.getGroups().size(), result.getGroups().size());
+        for (int i = 0; i < expected.getGroups().size(); i++) {
+            QueryResult.Group expectedGroup = expected.getGroups().get(i);
+            QueryResult.Group group = result.getGroups().get(i);
+            assertEquals(expectedGroup.getKey(), group.getKey());
+            for (int j = 0; j < 6; j++) {
+                assertEquals(expectedGroup.getValue(j), group.getValue(j));
+            }
+        }
+
+        // A scan that matches no rows has nothing to split
+        DatasetQuery emptyQuery = new DatasetQuery(LocalDate.of(1900, 1, 1), LocalDate.of(1900, 12, 31))
+                .where(ColumnPredicate.atLeast(DataField.NEW_CASES, 0))
+                .aggregate(Aggregate.SUM, DataField.NEW_CASES);
+        QueryResult emptyResult = assertTimeoutPreemptively(Duration.ofSeconds(10),
+                () -> parallel.execute(emptyQuery));
+        assertEquals(QueryPlan.SCAN, emptyResult.getPlan());
+        assertTrue(emptyResult.getGroups().isEmpty());
+    }
+
+    /**
+     * Tests whether the data cannot be changed through getData(), and whether
+     * replacing the data leaves the old version unchanged for its readers.
+     */
+    @Test
+    public void testReplaceData() {
+        assertThrows(UnsupportedOperationException.class, () -> data.remove(0));
+
+        DatasetState oldState = dataset.getState();
+        long oldVersion = dataset.getVersion();
+        dataset.replaceData(oldState.getColumns().getRows());
+
+        assertEquals(oldVersion + 1, dataset.getVersion());
+        assertNotSame(oldState, dataset.getState());
+        assertSame(data, oldState.getRecords());
+        assertEquals(data.size(), dataset.getData().size());
+        assertEquals(data.get(0).getDate(), dataset.getData().get(0).getDate());
+
+        // A reader still holding the old version does not see newer results
+        QueryCache cache = new QueryCache(1024);
+        cache.put("query", "new result", 16, oldVersion + 1);
+        long misses = cache.getMissCount();
+        assertNull(cache.get("query", oldVersion));
+        assertEquals(misses + 1, cache.getMissCount());
+        String result = cache.get("query", oldVersion + 1);
+        assertEquals("new result", result);
+    }
+
+    /**
+     * Tests whether a revised row replaces the row with the same date and
+     * borough, and whether the sums and rollups of the new store include the
+     * new value while the old store is unchanged.
+     */
+    @Test
+    public void testReviseRows() {
+        ColumnStore store = new ColumnStore(ColumnBatch.copyOf(dataset.getColumns().getRows()));
+        int row = store.size() / 2;
+        int day = store.getEpochDay(row);
+        int boroughId = store.getBoroughId(row);
+        int oldDeaths = store.getInt(row, DataField.NEW_DEATHS);
+
+        ColumnBatch revision = new ColumnBatch(1);
+        revision.addRow(day, boroughId);
+        revision.setValues(0, store.getRows(), row);
+        revision.setValue(0, DataField.NEW_DEATHS.ordinal(), oldDeaths + 5);
+        assertEquals(row, store.findRows(revision)[0]);
+
+        // A later row for the same key is a revision of the first one
+        ColumnBatch duplicates = ColumnBatch.copyOf(store.getRows()).select(new int[] { row });
+        duplicates.append(revision);
+        ColumnBatch unique = duplicates.withoutDuplicateKeys();
+        assertEquals(1, unique.size());
+        assertEquals(oldDeaths + 5, unique.getValue(0, DataField.NEW_DEATHS.ordinal()));
+
+        ColumnStore revised = store.withRowsRevised(new int[] { row }, revision);
+        assertEquals(store.size(), revised.size());
+        assertEquals(oldDeaths, store.getInt(row, DataField.NEW_DEATHS));
+        assertEquals(oldDeaths + 5, revised.getInt(row, DataField.NEW_DEATHS));
+
+        int first = store.getFirstEpochDay();
+        int last = store.getLastEpochDay();
+        assertEquals(store.getPartition(boroughId).getSum(DataField.NEW_DEATHS, first, last) + 5,
+                revised.getPartition(boroughId).getSum(DataField.NEW_DEATHS, first, last));
+
+        DatasetQuery query = new DatasetQuery(LocalDate.ofEpochDay(first), LocalDate.ofEpochDay(last))
+                .groupBy(GroupBy.MONTH)
+                .aggregate(Aggregate.SUM, DataField.NEW_DEATHS);
+        assertEquals(getTotal(new QueryExecutor(store).execute(query)) + 5,
+                getTotal(new QueryExecutor(revised).execute(query)));
+    }
+
+    /**
+     * @return the sum of the first value of every group (months without a
+     *         value count as 0)
+     */
+    private long getTotal(QueryResult result) {
+        long total = 0;
+        for (QueryResult.Group group : result.getGroups()) {
+            if (group.getValue(0) != null) {
+                total += group.getValue(0).longValue();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Tests whether merging rows that are each sorted by date gives the same
+     * rows, in the same order, as sorting all of them.
+     */
+    @Test
+    public void testMergeByDate() {
+        ColumnData rows = dataset.getColumns().getRows();
+        List<ColumnBatch> runs = new ArrayList<>();
+        ColumnBatch all = new ColumnBatch(rows.size());
+        for (int run = 0; run < 3; run++) {
+            ColumnBatch batch = new ColumnBatch(rows.size() / 3);
+            for (int row = rows.size() - 1; row >= 0; row--) {
+                if (rows.getBoroughId(row) % 3 == run) {
+                    batch.setValues(batch.addRow(rows.getEpochDay(row), rows.getBoroughId(row)), rows, row);
+                }
+            }
+            all.append(batch);
+            runs.add(batch.sortedByDate());
+        }
+
+        ColumnBatch merged = ColumnBatch.mergeByDate(runs);
+        ColumnBatch sorted = all.sortedByDate();
+        assertEquals(rows.size(), merged.size());
+        for (int row = 0; row < merged.size(); row++) {
+            assertEquals(sorted.getEpochDay(row), merged.getEpochDay(row));
+            assertEquals(sorted.getBoroughId(row), merged.getBoroughId(row));
+            assertEquals(sorted.getValue(row, DataField.NEW_CASES.ordinal()),
+                    merged.getValue(row, DataField.NEW_CASES.ordinal()));
+        }
+    }
+
+    /**
+     * Tests whether runs spilled to disk merge into the same rows as merging
+     * them in memory, including a row of a later run that revises a row of an
+     * earlier one, setting one null value and clearing another.
+     */
+    @Test
+    public void testSpilledRuns() throws IOException {
+        ColumnData rows = dataset.getColumns().getRows();
+        List<ColumnBatch> runs = new ArrayList<>();
+        for (int run = 0; run < 3; run++) {
+            ColumnBatch batch = new ColumnBatch(rows.size() / 3);
+            for (int row = rows.size() - 1; row >= 0; row--) {
+                if (rows.getBoroughId(row) % 3 == run) {
+                    batch.setValues(batch.addRow(rows.getEpochDay(row), rows.getBoroughId(row)), rows, row);
+                }
+            }
+            runs.add(batch);
+        }
+
+        // A later run revises a row of the first one, taking the values of
+        // another row so that a value becomes null, then giving a value to a
+        // field that was null
+        ColumnBatch first = runs.get(0);
+        int revised = findRowWithNull(first, -1);
+        int clearedField = findNullField(first, revised, -1);
+        int donor = findRowWithNull(first, revised);
+        int nulledField = findNullField(first, donor, revised);
+        ColumnBatch revision = runs.get(2);
+        int row = revision.addRow(first.getEpochDay(revised), first.getBoroughId(revised));
+        revision.setValues(row, first, donor);
+        revision.setValue(row, clearedField, 123456);
+        assertTrue(revision.isNull(row, nulledField));
+        for (int run = 0; run < 3; run++) {
+            runs.set(run, runs.get(run).sortedByDate());
+        }
+
+        ColumnBatch expected = ColumnBatch.mergeByDate(runs).withoutDuplicateKeys();
+        try (SpilledRuns spilled = new SpilledRuns(null)) {
+            for (ColumnBatch run : runs) {
+                spilled.add(run);
+            }
+            assertEquals(3, spilled.getRunCount());
+            assertEquals(rows.size(), spilled.size());
+
+            ByteBuffer buffer = ByteBuffer.allocate((int) spilled.getByteSize()).order(ByteOrder.LITTLE_ENDIAN);
+            spilled.mergeTo(buffer);
+            ColumnData merged = OffHeapColumnBatch.wrap(buffer.clear(), spilled.size());
+            int revisedRow = new ColumnStore(merged).findRows(revision.select(new int[] { row }))[0];
+            assertEquals(123456, merged.getValue(revisedRow, clearedField));
+            assertFalse(merged.isNull(revisedRow, clearedField));
+            assertTrue(merged.isNull(revisedRow, nulledField));
+            for (int r = 0; r < merged.size(); r++) {
+                assertEquals(expected.getEpochDay(r), merged.getEpochDay(r));
+                assertEquals(expected.getBoroughId(r), merged.getBoroughId(r));
+                for (int field = 0; field < DataField.values().length; field++) {
+                    assertEquals(expected.isNull(r, field), merged.isNull(r, field));
+                    assertEquals(expected.getValue(r, field), merged.getValue(r, field));
+                }
+            }
+        }
+    }
+
+    /**
+     * Tests whether a snapshot is still used after rows are added to the end of
+     * its csv file, remembering where its own rows end, and is no longer used
+     * once one of its rows is changed.
+     */
+    @Test
+    public void testSnapshotOfParsedRows() throws IOException, URISyntaxException {
+        List<String> lines = readCsvLines(2000);
+        File csvFile = writeTemporaryCsv(lines.subList(0, 1001));
+        File snapshotFile = new File(csvFile.getPath().replaceFirst("\\.csv$", ".snapshot"));
+        try {
+            CovidDataLoader loader = new CovidDataLoader(csvFile.getPath());
+            ColumnBatch rows = loader.loadSortedColumns();
+            DatasetSnapshot snapshot = new DatasetSnapshot(csvFile);
+            assertTrue(snapshot.save(rows, loader.getParsedEnd()));
+
+            // Rows added after the snapshot was saved are left to be appended
+            Files.write(csvFile.toPath(), lines.subList(1001, 2001), StandardOpenOption.APPEND);
+            ColumnData loaded = snapshot.load(StorageMode.HEAP);
+            assertNotNull(loaded);
+            assertEquals(rows.size(), loaded.size());
+            assertEquals(loader.getParsedEnd(), snapshot.getLoadedCsvSize());
+
+            // A changed row makes the snapshot stale
+            lines.set(1, lines.get(1).replaceFirst(",[^,]*$", ",123456"));
+            Files.write(csvFile.toPath(), lines);
+            assertNull(new DatasetSnapshot(csvFile).load(StorageMode.HEAP));
+        } finally {
+            csvFile.delete();
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Tests whether appendNewRows() adds the rows added to the end of the csv
+     * file, applies rows for an existing date and borough as revisions, and
+     * asks for a reload once a row before the end of the file is changed.
+     */
+    @Test
+    public void testAppendNewRows() throws IOException, URISyntaxException {
+        List<String> lines = readCsvLines(2500);
+        File csvFile = writeTemporaryCsv(lines.subList(0, 2001));
+        try {
+            Dataset.setDataLocation(csvFile.getPath());
+            assertTrue(dataset.reload());
+            assertEquals(2000, dataset.getColumns().size());
+            assertEquals(0, dataset.appendNewRows());
+
+            Files.write(csvFile.toPath(), lines.subList(2001, 2501), StandardOpenOption.APPEND);
+            long version = dataset.getVersion();
+            assertEquals(500, dataset.appendNewRows());
+            assertEquals(version + 1, dataset.getVersion());
+            assertEquals(2500, dataset.getColumns().size());
+            assertSameRowsAsCsv(csvFile);
+
+            // A row for a date and borough already loaded revises it
+            String revision = lines.get(1).replaceFirst(",[^,]*$", ",123456");
+            Files.write(csvFile.toPath(), List.of(revision), StandardOpenOption.APPEND);
+            assertTrue(dataset.refresh());
+            assertEquals(2500, dataset.getColumns().size());
+            assertSameRowsAsCsv(csvFile);
+
+            // Changing an earlier row means loading the whole file again
+            lines.set(2, lines.get(2).replaceFirst(",[^,]*$", ",654321"));
+            lines.add(revision);
+            Files.write(csvFile.toPath(), lines);
+            assertEquals(-1, dataset.appendNewRows());
+            assertTrue(dataset.refresh());
+            assertSameRowsAsCsv(csvFile);
+        } finally {
+            Dataset.setDataLocation(null);
+            dataset.reload();
+            csvFile.delete();
+            new File(csvFile.getPath().replaceFirst("\\.csv$", ".snapshot")).delete();
+        }
+    }
+
+    /**
+     * Tests whether loading the dataset again from the snapshot of its csv
+     * file also loads the rows added to the file since the snapshot was saved,
+     * and whether a changed row makes it parse the whole file again.
+     */
+    @Test
+    public void testReloadFromSnapshot() throws IOException, URISyntaxException {
+        List<String> lines = readCsvLines(2500);
+        File csvFile = writeTemporaryCsv(lines.subList(0, 2001));
+        File snapshotFile = new File(csvFile.getPath().replaceFirst("\\.csv$", ".snapshot"));
+        try {
+            Dataset.setDataLocation(csvFile.getPath());
+            assertTrue(dataset.reload());
+            assertTrue(snapshotFile.isFile());
+
+            // Loaded as on the next launch: the snapshot, then the rows after it
+            Files.write(csvFile.toPath(), lines.subList(2001, 2501), StandardOpenOption.APPEND);
+            long snapshotModified = snapshotFile.lastModified();
+            assertTrue(dataset.reload());
+            assertEquals(snapshotModified, snapshotFile.lastModified());
+            assertEquals(2500, dataset.getColumns().size());
+            assertEquals(csvFile.length(), dataset.getState().getCsvEnd());
+            assertSameRowsAsCsv(csvFile);
+
+            lines.set(1, lines.get(1).replaceFirst(",[^,]*$", ",123456"));
+            Files.write(csvFile.toPath(), lines);
+            assertNull(new DatasetSnapshot(csvFile).load(StorageMode.HEAP));
+            assertTrue(dataset.reload());
+            assertSameRowsAsCsv(csvFile);
+        } finally {
+            Dataset.setDataLocation(null);
+            dataset.reload();
+            csvFile.delete();
+            snapshotFile.delete();
+        }
+    }
+
+    /**
+     * Asserts that the dataset holds the same rows, in the same order, as
+     * loading a csv file from scratch.
+     */
+    private void assertSameRowsAsCsv(File csvFile) {
+        ColumnBatch expected = new CovidDataLoader(csvFile.getPath()).loadSortedColumns();
+        ColumnStore columns = dataset.getColumns();
+        assertEquals(expected.size(), columns.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getEpochDay(row), columns.getEpochDay(row));
+            assertEquals(expected.getBoroughId(row), columns.getBoroughId(row));
+            for (DataField field : DataField.values()) {
+                assertEquals(expected.isNull(row, field.ordinal()), columns.isNull(row, field));
+                assertEquals(expected.getValue(row, field.ordinal()), columns.getInt(row, field));
+            }
+        }
+    }
+
+    /**
+     * @param rows    the rows to search
+     * @param notNull a row whose non-null values the row found must have a
+     *                null value for one of, or -1 for any row with a null
+     *                value
+     * @return the first row found
+     */
+    private static int findRowWithNull(ColumnData rows, int notNull) {
+        for (int row = 0; row < rows.size(); row++) {
+            for (int field = 0; field < DataField.values().length; field++) {
+                if (rows.isNull(row, field) && (notNull < 0 || !rows.isNull(notNull, field))) {
+                    return row;
+                }
+            }
+        }
+        throw new IllegalStateException("No row with a null value");
+    }
+
+    /**
+     * @param rows    the rows holding the row
+     * @param row     the row to search
+     * @param notNull a row that the field found must not be null in, or -1
+     * @return the first field that is null in the row
+     */
+    private static int findNullField(ColumnData rows, int row, int notNull) {
+        for (int field = 0; field < DataField.values().length; field++) {
+            if (rows.isNull(row, field) && (notNull < 0 || !rows.isNull(notNull, field))) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Asserts that two lists hold records of the same rows, in the same order.
+     * Records are created as they are read, so the same row may be read as
+     * different objects.
+     */
+    private static void assertSameRecords(List<CovidData> expected, List<CovidData> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getDate(), actual.get(i).getDate());
+            assertEquals(expected.get(i).getBoroughId(), actual.get(i).getBoroughId());
+            for (DataField field : DataField.values()) {
+                assertEquals(field.getValue(expected.get(i)), field.getValue(actual.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Reads the start of the csv file that the dataset is loaded from.
+     *
+     * @param rows the number of rows to read
+     * @return the column headers followed by the rows
+     */
+    private static List<String> readCsvLines(int rows) throws IOException, URISyntaxException {
+        List<String> lines = Files.readAllLines(new CovidDataLoader().getDataFile().toPath());
+        return new ArrayList<>(lines.subList(0, rows + 1));
+    }
+
+    /**
+     * @param lines the lines of the file
+     * @return a new temporary csv file holding the lines
+     */
+    private static File writeTemporaryCsv(List<String> lines) throws IOException {
+        File csvFile = File.createTempFile("covid-test-", ".csv");
+        Files.write(csvFile.toPath(), lines);
+        return csvFile;
+    }
 }
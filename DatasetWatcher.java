@@ -0,0 +1,168 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches the csv file of the dataset, and brings the dataset up to date on a
+ * background thread whenever the file changes (see Dataset.refresh()). Rows
+ * added to the end of the file are loaded on their own, and any other change
+ * reloads the whole file. The file is only read once it has stopped changing
+ * for a while, so that a file that is still being written is not loaded half
+ * way through.
+ *
+ * A reload that fails leaves the previous data in place, and the listener is
+ * only told when the data has changed.
+ *
+ * @version 2026.10.18
+ */
+public class DatasetWatcher {
+    // How long the file must go without changing before it is reloaded
+    private static final long QUIET_PERIOD_MILLIS = 1000;
+
+    private final Dataset dataset;
+    private final Path csvFile;
+    private final Consumer<Dataset> reloadListener;
+
+    private WatchService watchService;
+
+    /**
+     * @param dataset        the dataset to reload
+     * @param csvFile        the csv file that the dataset is loaded from
+     * @param reloadListener told after the data of the dataset has changed
+     *                       (called on the watching thread)
+     */
+    public DatasetWatcher(Dataset dataset, File csvFile, Consumer<Dataset> reloadListener) {
+        this.dataset = dataset;
+        this.csvFile = csvFile.toPath().toAbsolutePath();
+        this.reloadListener = reloadListener;
+    }
+
+    /**
+     * Starts watching the csv file on a background thread. Does nothing if
+     * the file is already being watched.
+     *
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            return;
+        }
+
+        WatchService service = FileSystems.getDefault().newWatchService();
+        try {
+            csvFile.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+        watchService = service;
+
+        Thread watchingThread = new Thread(() -> watch(service), "Dataset watcher");
+
+        // Watching should not keep the application running once it is closed
+        watchingThread.setDaemon(true);
+        watchingThread.start();
+    }
+
+    /**
+     * Stops watching the csv file. A reload that has already started is
+     * finished.
+     */
+    public synchronized void stop() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                System.out.println("Could not stop watching the csv file: " + e);
+            }
+            watchService = null;
+        }
+    }
+
+    /**
+     * Waits for the csv file to change and brings the dataset up to date, until
+     * the watch service is closed.
+     *
+     * @param service the service that the directory of the file is
+     *                registered with
+     */
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = isFileChanged(key);
+                if (!resetKey(key, service)) {
+                    return;
+                }
+                if (!changed) {
+                    continue;
+                }
+
+                // Wait until the file has stopped changing
+                while ((key = service.poll(QUIET_PERIOD_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    isFileChanged(key);
+                    if (!resetKey(key, service)) {
+                        return;
+                    }
+                }
+
+                if (dataset.refresh()) {
+                    reloadListener.accept(dataset);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped watching
+        }
+    }
+
+    /**
+     * Takes the events of a watch key.
+     *
+     * @param key the key of the watched directory
+     * @return true if any of the events may have changed the csv file
+     */
+    private boolean isFileChanged(WatchKey key) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            // Events may have been lost, so the file may have changed
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || csvFile.getFileName().equals(event.context())) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gets a watch key ready for the next events. If the directory of the csv
+     * file can no longer be watched, e.g. because it has been deleted, stops
+     * watching instead.
+     *
+     * @param key     the key of the watched directory
+     * @param service the service that the key belongs to
+     * @return false if watching has stopped
+     */
+    private boolean resetKey(WatchKey key, WatchService service) {
+        if (key.reset()) {
+            return true;
+        }
+
+        System.out.println("Stopped watching " + csvFile + " as its directory can no longer be watched");
+        synchronized (this) {
+            // Unless watching has already been stopped, or started again
+            if (watchService == service) {
+                stop();
+            }
+        }
+        return false;
+    }
+}
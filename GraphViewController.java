@@ -1,6 +1,7 @@
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
@@ -29,6 +30,9 @@ import javafx.util.Duration;
  * @version 2023.03.26
  */
 public class GraphViewController extends ViewController {
+    // Numbers of days that the rolling averages of each field can be taken over
+    private static final int[] ROLLING_AVERAGE_DAYS = { 7, 14 };
+
     @FXML
     private AnchorPane graphPane;
 
@@ -60,11 +64,39 @@ public class GraphViewController extends ViewController {
     public void initialize() {
         super.initialize();
 
-        boroughComboBox.getItems().addAll(dataset.getBoroughs());
         dataFieldComboBox.getItems().addAll(new String[] { "Retail and Recreation Mobility",
                 "Grocery and Pharmacy Mobility", "Parks Mobility",
                 "Transit Stations Mobility", "Workplaces Mobility", "Residential Mobility", "New Cases", "Total Cases",
                 "New Deaths", "Total Deaths" });
+
+        // Rolling averages of every field where they are meaningful
+        for (DataField field : DataField.values()) {
+            if (field.hasRollingWindows()) {
+                for (int days : ROLLING_AVERAGE_DAYS) {
+                    dataFieldComboBox.getItems().add(field.getDisplayName() + getRollingAverageSuffix(days));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param days The number of days in the rolling average
+     * @return The text added to the name of a field to show its rolling average
+     *         over that many days instead
+     */
+    private static String getRollingAverageSuffix(int days) {
+        return " (" + days + "-day rolling average)";
+    }
+
+    /**
+     * Adds all the boroughs in the dataset to the borough choice box.
+     * 
+     * @param dataset The loaded Dataset instance.
+     */
+    @Override
+    protected void datasetLoaded(Dataset dataset) {
+        super.datasetLoaded(dataset);
+        boroughComboBox.getItems().addAll(dataset.getBoroughs());
     }
 
     /**
@@ -171,15 +203,33 @@ public class GraphViewController extends ViewController {
         ArrayList<String> xAxisValues = new ArrayList<>();
         ArrayList<Integer> yAxisValues = new ArrayList<>();
 
-        // Get the data from the dataset and store dates as x-axis and the data as
-        // y-axis
-        for (CovidData data : dataset.getBoroughData(borough, fromDate, toDate)) {
-            LocalDate date = LocalDate.parse(data.getDate());
-            Integer value = getDataField(data);
+        String selectedField = dataFieldComboBox.getValue();
+        for (int days : ROLLING_AVERAGE_DAYS) {
+            String suffix = getRollingAverageSuffix(days);
+            if (selectedField != null && selectedField.endsWith(suffix)) {
+                String fieldName = selectedField.substring(0, selectedField.length() - suffix.length());
+                addRollingAverages(DataField.forDisplayName(fieldName), days, fromDate, toDate, xAxisValues,
+                        yAxisValues);
+            }
+        }
 
-            if (date != null && value != null) {
-                xAxisValues.add(date.toString());
-                yAxisValues.add(value);
+        // Query the value of the field on each day for the borough
+        DataField field = DataField.forDisplayName(selectedField);
+        if (field != null) {
+            QueryResult result = dataset.query(new DatasetQuery(fromDate, toDate)
+                    .forBoroughs(borough)
+                    .groupBy(GroupBy.DAY)
+                    .aggregate(Aggregate.LAST, field));
+
+            // Store dates as x-axis and the data as y-axis, newest first
+            List<QueryResult.Group> days = result.getGroups();
+            for (int i = days.size() - 1; i >= 0; i--) {
+                Double value = days.get(i).getValue(0);
+
+                if (value != null) {
+                    xAxisValues.add(days.get(i).getDate().toString());
+                    yAxisValues.add(value.intValue());
+                }
             }
         }
 
@@ -191,48 +241,37 @@ public class GraphViewController extends ViewController {
     }
 
     /**
-     * Returns the selected data field from the CovidData object.
+     * Adds the rolling average of a field on each day in the date range to the
+     * values to be plotted, newest first. The averages are read from the
+     * borough's rolling window, so the rows are not scanned again.
      * 
-     * @param data the CovidData object to retrieve the data field from
-     * @return the selected data field value from the CovidData object, or null if
-     *         no data field has been selected
+     * @param field       The field to plot the rolling average of
+     * @param days        The number of days in each average
+     * @param fromDate    The start date of the date range (inclusive)
+     * @param toDate      The end date of the date range (inclusive)
+     * @param xAxisValues The dates to be plotted
+     * @param yAxisValues The averages to be plotted, rounded to whole numbers
      */
-    private Integer getDataField(CovidData data) {
-        String dataFieldSelected = dataFieldComboBox.getValue();
-
-        switch (dataFieldSelected) {
-            case "Retail and Recreation Mobility":
-                return data.getRetailRecreationGMR();
-
-            case "Grocery and Pharmacy Mobility":
-                return data.getGroceryPharmacyGMR();
-
-            case "Parks Mobility":
-                return data.getParksGMR();
-
-            case "Transit Stations Mobility":
-                return data.getTransitGMR();
-
-            case "Workplaces Mobility":
-                return data.getWorkplacesGMR();
-
-            case "Residential Mobility":
-                return data.getResidentialGMR();
-
-            case "New Cases":
-                return data.getNewCases();
-
-            case "Total Cases":
-                return data.getTotalCases();
+    private void addRollingAverages(DataField field, int days, LocalDate fromDate, LocalDate toDate,
+            ArrayList<String> xAxisValues, ArrayList<Integer> yAxisValues) {
+        int boroughOrdinal = BoroughDictionary.getInstance().findId(borough);
+        if (field == null || boroughOrdinal < 0) {
+            return;
+        }
 
-            case "New Deaths":
-                return data.getNewDeaths();
+        // Rows in the date range, found with binary searches
+        BoroughPartition partition = dataset.getBoroughPartition(boroughOrdinal);
+        int first = partition.findFirstIndexFrom((int) fromDate.toEpochDay());
+        int end = partition.findFirstIndexAfter((int) toDate.toEpochDay());
 
-            case "Total Deaths":
-                return data.getTotalDeaths();
+        RollingWindow window = dataset.getRollingWindow(boroughOrdinal, field, days);
+        for (int i = end - 1; i >= first; i--) {
+            Double average = window.getAverage(i);
 
-            default:
-                return null;
+            if (average != null) {
+                xAxisValues.add(LocalDate.ofEpochDay(window.getEpochDay(i)).toString());
+                yAxisValues.add((int) Math.round(average));
+            }
         }
     }
 
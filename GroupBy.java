@@ -0,0 +1,58 @@
+import java.time.LocalDate;
+
+/**
+ * How the rows matched by a DatasetQuery are grouped before they are
+ * aggregated. Each group is identified by an int key: a borough id, or the
+ * epoch day of the first day of the group's day, week or month.
+ *
+ * @version 2026.10.18
+ */
+public enum GroupBy {
+    // All rows in a single group
+    NONE,
+    // One group per borough
+    BOROUGH,
+    // One group per date
+    DAY,
+    // One group per ISO week (starting on a Monday)
+    WEEK,
+    // One group per calendar month
+    MONTH;
+
+    /**
+     * @param epochDay  the date of a row, as an epoch day
+     * @param boroughId the id of the borough of the row
+     * @return the key of the group that the row belongs to
+     */
+    public int getKey(int epochDay, int boroughId) {
+        switch (this) {
+            case BOROUGH:
+                return boroughId;
+            case DAY:
+                return epochDay;
+            case WEEK:
+                return getWeekStart(epochDay);
+            case MONTH:
+                return (int) LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return true if the groups are dates, false if they are boroughs or a
+     *         single group
+     */
+    public boolean isByDate() {
+        return this == DAY || this == WEEK || this == MONTH;
+    }
+
+    /**
+     * @param epochDay a date, as an epoch day
+     * @return the epoch day of the Monday on or before the date
+     */
+    public static int getWeekStart(int epochDay) {
+        // 1970-01-01 (epoch day 0) was a Thursday, 3 days after a Monday
+        return epochDay - Math.floorMod(epochDay + 3, 7);
+    }
+}
@@ -1,7 +1,9 @@
+import java.io.IOException;
+import java.net.URISyntaxException;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collections;
 
+import javafx.application.Platform;
 import javafx.util.Duration;
 import javafx.animation.Interpolator;
 import javafx.animation.KeyFrame;
@@ -43,12 +45,18 @@ public class MainWindowController {
     @FXML
     protected StackPane stackPane;
 
-    // Instance of Dataset singleton
-    protected Dataset dataset = Dataset.getInstance();
+    // Instance of Dataset singleton, set once it has finished loading
+    protected Dataset dataset;
 
     private ArrayList<ViewController> controllers;
     private int controllerIndex;
 
+    // Shows the loading progress until the dataset is ready
+    private WelcomeViewController welcomeController;
+
+    // Reloads the dataset when the csv file changes
+    private DatasetWatcher datasetWatcher;
+
     /**
      * 
      * Initialises the GUI with the necessary data and controllers for panels.
@@ -76,8 +84,79 @@ public class MainWindowController {
         // Load the first panel into the center of the screen
         stackPane.getChildren().add(controllers.get(controllerIndex).getView());
 
+        loadDataset();
+    }
+
+    /**
+     * Loads the dataset on a background thread, so that the window is shown and
+     * stays responsive while the data is loaded. The welcome panel shows the
+     * progress, and the date pickers are enabled once the data is ready.
+     */
+    private void loadDataset() {
+        Dataset.loadAsync(progress -> Platform.runLater(() -> welcomeController.showLoadingProgress(progress)))
+                .whenComplete((loadedDataset, error) -> Platform.runLater(() -> {
+                    if (error != null) {
+                        welcomeController.showLoadingError(error);
+                    } else {
+                        datasetLoaded(loadedDataset);
+                    }
+                }));
+    }
+
+    /**
+     * Passes the loaded dataset to every panel and lets the user pick dates.
+     * 
+     * @param loadedDataset The Dataset instance that has finished loading
+     */
+    private void datasetLoaded(Dataset loadedDataset) {
+        dataset = loadedDataset;
+        for (ViewController controller : controllers) {
+            controller.datasetLoaded(dataset);
+        }
+
         applyDatePickLimit(fromDatePicker);
         applyDatePickLimit(toDatePicker);
+
+        // The panel switching buttons are enabled once a valid range is picked
+        fromDatePicker.setDisable(false);
+        toDatePicker.setDisable(false);
+
+        if (Dataset.isDataFileWatched()) {
+            watchDataFile();
+        }
+    }
+
+    /**
+     * Starts reloading the dataset in the background whenever its csv file
+     * changes.
+     */
+    private void watchDataFile() {
+        try {
+            datasetWatcher = new DatasetWatcher(dataset, Dataset.createLoader().getDataFile(),
+                    reloadedDataset -> Platform.runLater(this::datasetReloaded));
+            datasetWatcher.start();
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            System.out.println("Could not watch the csv file for changes: " + e);
+        }
+    }
+
+    /**
+     * Lets the user pick the dates of the reloaded data, and refreshes the
+     * panel being shown.
+     */
+    private void datasetReloaded() {
+        for (ViewController controller : controllers) {
+            controller.datasetReloaded();
+        }
+
+        applyDatePickLimit(fromDatePicker);
+        applyDatePickLimit(toDatePicker);
+
+        LocalDate fromDate = fromDatePicker.getValue();
+        LocalDate toDate = toDatePicker.getValue();
+        if (fromDate != null && toDate != null) {
+            controllers.get(controllerIndex).updatePanelForDateRange(fromDate, toDate);
+        }
     }
 
     /**
@@ -96,6 +175,10 @@ public class MainWindowController {
             // get controller instance as set in FXML file
             ViewController controller = loader.getController();
             controllers.add(controller);
+
+            if (controller instanceof WelcomeViewController) {
+                welcomeController = (WelcomeViewController) controller;
+            }
         }
     }
 
@@ -108,8 +191,8 @@ public class MainWindowController {
     private void applyDatePickLimit(DatePicker datePicker) {
 
         // Calculate the minimum and maximum dates in the dataset
-        LocalDate minDate = LocalDate.parse(Collections.min(dataset.getData()).getDate());
-        LocalDate maxDate = LocalDate.parse(Collections.max(dataset.getData()).getDate());
+        LocalDate minDate = dataset.getFirstDate();
+        LocalDate maxDate = dataset.getLastDate();
 
         datePicker.setDayCellFactory((cell) -> new DateCell() {
             @Override
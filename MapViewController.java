@@ -55,14 +55,15 @@ public class MapViewController extends ViewController {
     @FXML
     private Label messageLabel;
 
-    // Used to map polygon IDs to String borough names
-    private HashMap<String, String> boroughIdToName;
+    // Stores the sum of new deaths in the date range for each borough, in the
+    // order of dataset.getBoroughs()
+    private long[] boroughDeathsInDateRange;
 
-    // Stores the sum of new cases in the date range for each borough
-    private HashMap<String, Integer> boroughDeathsInDateRange;
+    // Whether each borough has any new deaths data in the date range
+    private boolean[] boroughHasDeathsInDateRange;
 
     // The highest death sum in the date range
-    private Integer highestDeathsInRange;
+    private long highestDeathsInRange;
 
     // Initial attributes of the polygon, before hover changes
     private Paint hoveredPolygonInitialBorderColor;
@@ -87,10 +88,19 @@ public class MapViewController extends ViewController {
                 islingtonPolygon, kensChelsPolygon, kingstonPolygon, lambethPolygon, lewishamPolygon, mertonPolygon,
                 newhamPolygon, redbridgePolygon, richmondPolygon, southwarkPolygon, suttonPolygon,
                 walthamPolygon, wandsworthPolygon, westminsterPolygon, barkDagPolygon, barnetPolygon };
+    }
 
-        boroughIdToName = new HashMap<>();
-        String[] boroughNames = dataset.getBoroughs();
-        String[] boroughPolygons = { "barkDagPolygon", "barnetPolygon", "bexleyPolygon", "brentPolygon",
+    /**
+     * Tags each borough polygon with the id of its borough in the dataset, so
+     * that the polygon's data can be looked up without its name.
+     * 
+     * @param dataset The loaded Dataset instance.
+     */
+    @Override
+    protected void datasetLoaded(Dataset dataset) {
+        super.datasetLoaded(dataset);
+
+        String[] polygonNames = { "barkDagPolygon", "barnetPolygon", "bexleyPolygon", "brentPolygon",
                 "bromleyPolygon", "camdenPolygon", "cityPolygon", "croydonPolygon", "ealingPolygon", "enfieldPolygon",
                 "greenwichPolygon", "hackneyPolygon", "hammfullPolygon", "haringeyPolygon", "harrowPolygon",
                 "haveringPolygon", "hillingdonPolygon", "hounslowPolygon", "islingtonPolygon", "kensChelsPolygon",
@@ -98,12 +108,33 @@ public class MapViewController extends ViewController {
                 "redbridgePolygon", "richmondPolygon", "southwarkPolygon", "suttonPolygon", "hamletsPolygon",
                 "walthamPolygon", "wandsworthPolygon", "westminsterPolygon" };
 
-        // Creates a mapping between each polygon name and the name of the borough
-        for (int i = 0; i < boroughNames.length; i++) {
-            boroughIdToName.put(boroughPolygons[i], boroughNames[i]);
+        // Polygon names are in the order of dataset.getBoroughs(), which is the
+        // order of the borough ids
+        HashMap<String, Integer> polygonIds = new HashMap<>();
+        for (int i = 0; i < polygonNames.length; i++) {
+            polygonIds.put(polygonNames[i], i);
+        }
+        for (Polygon boroughPolygon : boroughPolygons) {
+            boroughPolygon.setUserData(polygonIds.get(boroughPolygon.getId()));
         }
     }
 
+    /**
+     * @param poly a borough polygon
+     * @return the id of the polygon's borough
+     */
+    private int getBoroughId(Polygon poly) {
+        return (Integer) poly.getUserData();
+    }
+
+    /**
+     * @param poly a borough polygon
+     * @return the name of the polygon's borough, for showing to the user
+     */
+    private String getBoroughName(Polygon poly) {
+        return BoroughDictionary.getInstance().getName(getBoroughId(poly));
+    }
+
     /**
      * Processes the data within the given date range by resetting the heat map
      * data, validating the date range, and assigning colors to the boroughs.
@@ -142,23 +173,20 @@ public class MapViewController extends ViewController {
         // Reset the maximum value
         highestDeathsInRange = 0;
 
-        // Clear values of map
-        boroughDeathsInDateRange = new HashMap<>();
-        for (String boroughName : dataset.getBoroughs()) {
-            boroughDeathsInDateRange.put(boroughName, null);
-        }
+        // Clear values of arrays
+        int boroughCount = dataset.getBoroughs().length;
+        boroughDeathsInDateRange = new long[boroughCount];
+        boroughHasDeathsInDateRange = new boolean[boroughCount];
     }
 
     /**
      * Calculates the number of deaths in the given date range for each borough in
-     * the dataset
-     * by summing all of the new deaths on each day for each borough.
+     * the dataset, with a single query that sums the new deaths of each borough.
+     * The dataset answers it from its running totals, so each borough's sum
+     * takes the same time however long the date range is.
      * 
      * Also calculates the maximum number of deaths in the date range, by checking
-     * if the updated
-     * value is larger than the current maximum. This is to avoid multiple
-     * iterations over the
-     * relatively large dataset.
+     * if each borough's sum is larger than the current maximum.
      * 
      * @param fromDate The start date of the date range (inclusive) to calculate
      *                 deaths in
@@ -168,33 +196,43 @@ public class MapViewController extends ViewController {
     private void calculateBoroughDeathsInDateRange(LocalDate fromDate, LocalDate toDate) {
         resetBoroughDeathsInDateRange();
 
-        for (CovidData record : dataset.getDataInDateRange(fromDate, toDate)) {
-            String boroughName = record.getBorough();
+        QueryResult deaths = dataset.query(new DatasetQuery(fromDate, toDate)
+                .groupBy(GroupBy.BOROUGH)
+                .aggregate(Aggregate.SUM, DataField.NEW_DEATHS));
 
-            Integer deathsOnDay = record.getNewDeaths();
-            Integer deathsInDateRange = boroughDeathsInDateRange.get(boroughName);
+        for (QueryResult.Group borough : deaths.getGroups()) {
+            int i = borough.getKey();
+            Double deathsInDateRange = borough.getValue(0);
 
-            // If no new deaths on this day, continue onto the next record
-            if (deathsOnDay == null) {
+            // Boroughs without any new deaths data in the range are left without a value
+            if (deathsInDateRange == null || i >= boroughDeathsInDateRange.length) {
                 continue;
             }
 
-            // If this is the first record for the borough checked, set initial value
-            if (deathsInDateRange == null) {
-                deathsInDateRange = deathsOnDay;
-            } else {
-                // Update cumulative count of deaths for borough
-                deathsInDateRange += deathsOnDay;
-            }
-
-            boroughDeathsInDateRange.put(boroughName, deathsInDateRange);
+            boroughHasDeathsInDateRange[i] = true;
+            boroughDeathsInDateRange[i] = deathsInDateRange.longValue();
 
             // Check if value calculated is larger than the maximum deaths in the range for
             // all boroughs.
-            highestDeathsInRange = Math.max(deathsInDateRange, highestDeathsInRange);
+            highestDeathsInRange = Math.max(boroughDeathsInDateRange[i], highestDeathsInRange);
         }
     }
 
+    /**
+     * Returns the number of deaths in the current date range for a borough.
+     * 
+     * @param boroughId The id of the borough
+     * @return the sum of new deaths for the borough, or null if it has no data in
+     *         the date range
+     */
+    private Long getDeathsInDateRange(int boroughId) {
+        if (boroughHasDeathsInDateRange == null || boroughId >= boroughHasDeathsInDateRange.length
+                || !boroughHasDeathsInDateRange[boroughId]) {
+            return null;
+        }
+        return boroughDeathsInDateRange[boroughId];
+    }
+
     /**
      * Assigns colours to borough polygons based on the number of deaths in the
      * given date range. The colour of a borough is determined relative to the
@@ -203,10 +241,9 @@ public class MapViewController extends ViewController {
      */
     private void assignBoroughsColor() {
         for (Polygon boroughPolygon : boroughPolygons) {
-            String boroughName = boroughIdToName.get(boroughPolygon.getId());
             // the colour the borough is assigned is based on the number of deaths for the
             // borough in the date range
-            Integer deathsInDateRangeForBorough = boroughDeathsInDateRange.get(boroughName);
+            Long deathsInDateRangeForBorough = getDeathsInDateRange(getBoroughId(boroughPolygon));
             Color col; // colour to assign the borough
 
             // If the borough has data within the date range, give it a colour.
@@ -244,7 +281,6 @@ public class MapViewController extends ViewController {
     @FXML
     void mouseEnteredPolygon(MouseEvent event) {
         Polygon poly = (Polygon) event.getSource();
-        String name = boroughIdToName.get(poly.getId());
 
         // Set the coordinates of the info pane to mouse coords + padding
         determineInfoPaneCoordinates(event, poly);
@@ -264,7 +300,7 @@ public class MapViewController extends ViewController {
         showBoroughInfoOnHover(poly);
 
         // Change label to hovered borough's name
-        selectedBoroughLabel.setText(name);
+        selectedBoroughLabel.setText(getBoroughName(poly));
 
         // Store the polygon's initial properties
         hoveredPolygonInitialBorderColor = poly.getStroke();
@@ -318,10 +354,8 @@ public class MapViewController extends ViewController {
         // Show the info box
         hoverBox.setVisible(true);
 
-        String boroughName = boroughIdToName.get(poly.getId());
-
         // Retrieve the deaths in the date range for that borough
-        Integer deathsInDateRangeForBorough = boroughDeathsInDateRange.get(boroughName);
+        Long deathsInDateRangeForBorough = getDeathsInDateRange(getBoroughId(poly));
 
         // Calculate the value as a percentage of the highest death count in the date
         // range
@@ -330,8 +364,8 @@ public class MapViewController extends ViewController {
             percentage = (int) Math.round((100.0 * deathsInDateRangeForBorough / highestDeathsInRange));
         }
 
-        hoverBoxBoroughLabel.setText(boroughName);
-        deathsHoverLabel.setText("Borough Deaths: " + boroughDeathsInDateRange.get(boroughName) + "\n" + percentage
+        hoverBoxBoroughLabel.setText(getBoroughName(poly));
+        deathsHoverLabel.setText("Borough Deaths: " + deathsInDateRangeForBorough + "\n" + percentage
                 + "% of highest deaths within date range");
 
         // Position the hover box
@@ -349,19 +383,18 @@ public class MapViewController extends ViewController {
     void mousePressedPolygon(MouseEvent event) throws IOException {
         // Get which borough was clicked
         Polygon poly = (Polygon) event.getSource();
-        String borough = boroughIdToName.get(poly.getId());
 
         // Show data for that borough
-        showBoroughData(borough);
+        showBoroughData(getBoroughId(poly));
     }
 
     /**
      * Displays a pop-up window with information about the specified borough.
      * 
-     * @param boroughName The name of the borough that data is being displayed
+     * @param boroughId The id of the borough that data is being displayed
      * @throws IOException if there is an error loading the FXML file
      */
-    private void showBoroughData(String boroughName) throws IOException {
+    private void showBoroughData(int boroughId) throws IOException {
         // Load and stage the FXML file
         Stage stage = new Stage();
 
@@ -369,7 +402,7 @@ public class MapViewController extends ViewController {
         Parent root = loader.load();
         Scene scene = new Scene(root);
 
-        stage.setTitle(boroughName);
+        stage.setTitle(BoroughDictionary.getInstance().getName(boroughId));
         stage.setScene(scene);
 
         // Sets owner of pop-up to the MainWindow
@@ -377,7 +410,7 @@ public class MapViewController extends ViewController {
 
         BoroughInfoController controller = loader.getController();
         // Load data into pop-up controller
-        controller.showData(dataset.getBoroughData(boroughName, fromDate, toDate));
+        controller.showData(dataset.getBoroughData(boroughId, fromDate, toDate));
 
         stage.show();
     }
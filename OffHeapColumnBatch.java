@@ -0,0 +1,149 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Rows stored one primitive column per field outside the heap, in a direct or
+ * memory-mapped ByteBuffer laid out as written by ColumnBatch.writeTo(). The
+ * garbage collector sees a single buffer object however many rows there are,
+ * so its pauses do not grow with the data. A memory-mapped buffer is also
+ * backed by its file, so the operating system can page the columns in and out.
+ *
+ * The batch cannot be changed once created.
+ *
+ * @version 2026.10.18
+ */
+public class OffHeapColumnBatch implements ColumnData {
+    private static final int FIELD_COUNT = DataField.values().length;
+
+    // Holds every column (kept so that the memory stays reachable)
+    private final ByteBuffer buffer;
+
+    private final int size;
+    private final IntBuffer dates;
+    private final IntBuffer boroughs;
+    private final IntBuffer[] values;
+
+    // One bit per row for each field, set when the value is null
+    private final LongBuffer[] nulls;
+
+    /**
+     * @param buffer the buffer holding the columns, from position 0 (little
+     *               endian)
+     * @param size   the number of rows
+     */
+    private OffHeapColumnBatch(ByteBuffer buffer, int size) {
+        this.buffer = buffer;
+        this.size = size;
+
+        int columnBytes = size * Integer.BYTES;
+        int nullBytes = ((size + 63) >>> 6) * Long.BYTES;
+        int offset = 0;
+
+        dates = slice(offset, columnBytes).asIntBuffer();
+        offset += columnBytes;
+        boroughs = slice(offset, columnBytes).asIntBuffer();
+        offset += columnBytes;
+
+        values = new IntBuffer[FIELD_COUNT];
+        nulls = new LongBuffer[FIELD_COUNT];
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            values[field] = slice(offset, columnBytes).asIntBuffer();
+            offset += columnBytes;
+            nulls[field] = slice(offset, nullBytes).asLongBuffer();
+            offset += nullBytes;
+        }
+    }
+
+    /**
+     * @return the bytes of the buffer between two positions, little endian
+     */
+    private ByteBuffer slice(int offset, int length) {
+        return buffer.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Copies rows into direct memory outside the heap.
+     *
+     * @param rows the rows to copy
+     * @return a batch holding the same rows
+     * @throws IllegalArgumentException if the rows take up 2GB or more
+     */
+    public static OffHeapColumnBatch copyOf(ColumnData rows) {
+        long byteSize = rows.getByteSize();
+        if (byteSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many rows for one buffer: " + rows.size());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) byteSize).order(ByteOrder.LITTLE_ENDIAN);
+        rows.writeTo(buffer);
+        return new OffHeapColumnBatch(buffer.clear(), rows.size());
+    }
+
+    /**
+     * Uses the columns in a buffer in place, without copying them. The buffer
+     * may be memory-mapped from a file (e.g. a snapshot), which must then not be
+     * changed while the batch is in use.
+     *
+     * @param buffer the buffer, positioned at the first column as written by
+     *               writeTo()
+     * @param size   the number of rows
+     * @return a batch over the columns in the buffer
+     */
+    public static OffHeapColumnBatch wrap(ByteBuffer buffer, int size) {
+        return new OffHeapColumnBatch(buffer.slice(), size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getEpochDay(int row) {
+        return dates.get(row);
+    }
+
+    @Override
+    public int getBoroughId(int row) {
+        return boroughs.get(row);
+    }
+
+    @Override
+    public boolean isNull(int row, int field) {
+        return (nulls[field].get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    @Override
+    public int getValue(int row, int field) {
+        return values[field].get(row);
+    }
+
+    @Override
+    public CovidData getRecord(int row) {
+        int[] rowValues = new int[FIELD_COUNT];
+        int nullMask = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            rowValues[field] = getValue(row, field);
+            if (isNull(row, field)) {
+                nullMask |= 1 << field;
+            }
+        }
+        return new CovidData(getEpochDay(row), getBoroughId(row), rowValues, nullMask);
+    }
+
+    @Override
+    public long getByteSize() {
+        return ColumnBatch.getByteSize(size);
+    }
+
+    /**
+     * Copies the columns as they are, so the buffer written to must be little
+     * endian.
+     */
+    @Override
+    public void writeTo(ByteBuffer target) {
+        target.put(buffer.slice(0, (int) getByteSize()));
+    }
+}
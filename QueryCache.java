@@ -0,0 +1,182 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Keeps the results of recent queries, so that asking the same question again
+ * (e.g. when switching back to a panel) does not work it out again. The
+ * least recently used results are dropped once the results take up more than
+ * a set amount of memory.
+ *
+ * Every result is stored with the version of the data it was worked out from.
+ * When the data changes, its version changes and every stored result is
+ * dropped. A reader still working from an older version of the data never
+ * sees the results stored for a newer one.
+ *
+ * @version 2026.10.18
+ */
+public class QueryCache {
+    // Rough memory used by each entry, on top of its result
+    private static final long ENTRY_OVERHEAD = 96;
+
+    private final long maxBytes;
+
+    // Results in order of use, least recently used first
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Version of the data that the stored results were worked out from
+    private long version;
+
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * @param maxBytes the most memory that the stored results may take up
+     *                 (roughly)
+     */
+    public QueryCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Looks up the result of a query.
+     *
+     * @param key     the query, which must have value-based equals() and
+     *                hashCode()
+     * @param version the version of the data that the caller is reading
+     * @return the stored result, or null if there is none for this version of
+     *         the data
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <V> V get(Object key, long version) {
+        checkVersion(version);
+        if (version != this.version) {
+            // The stored results are for newer data than the caller's
+            misses++;
+            return null;
+        }
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return (V) entry.value;
+    }
+
+    /**
+     * Stores the result of a query, dropping the least recently used results
+     * if there is not enough room for it.
+     *
+     * @param key     the query
+     * @param value   the result of the query
+     * @param size    roughly how many bytes the result takes up
+     * @param version the version of the data that the result was worked out
+     *                from
+     */
+    public synchronized void put(Object key, Object value, long size, long version) {
+        checkVersion(version);
+        if (version != this.version) {
+            // Worked out from data that has already been replaced
+            return;
+        }
+
+        long entrySize = size + ENTRY_OVERHEAD;
+        if (entrySize > maxBytes) {
+            return;
+        }
+
+        Entry previous = entries.put(key, new Entry(value, entrySize));
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += entrySize;
+
+        Iterator<Entry> leastRecentlyUsed = entries.values().iterator();
+        while (bytes > maxBytes && leastRecentlyUsed.hasNext()) {
+            bytes -= leastRecentlyUsed.next().size;
+            leastRecentlyUsed.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops every stored result if they were worked out from an older version
+     * of the data.
+     */
+    private void checkVersion(long version) {
+        if (version > this.version) {
+            if (!entries.isEmpty()) {
+                invalidations++;
+            }
+            entries.clear();
+            bytes = 0;
+            this.version = version;
+        }
+    }
+
+    /**
+     * @return the number of lookups that found a stored result
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that did not find a stored result
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results dropped to make room for newer ones
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of times every result was dropped because the data
+     *         changed
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidations;
+    }
+
+    /**
+     * @return the number of stored results
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return roughly how many bytes the stored results take up
+     */
+    public synchronized long getByteSize() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QueryCache[%d results, %d/%d bytes, %d hits, %d misses, %d evictions, "
+                + "%d invalidations]", entries.size(), bytes, maxBytes, hits, misses, evictions, invalidations);
+    }
+
+    /**
+     * A stored result and roughly how many bytes it takes up.
+     */
+    private static class Entry {
+        private final Object value;
+        private final long size;
+
+        Entry(Object value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
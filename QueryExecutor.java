@@ -0,0 +1,422 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Works out the answer to a DatasetQuery over a ColumnStore. Each borough
+ * partition is answered on its own, giving partial aggregates that are then
+ * merged into the groups of the result.
+ *
+ * Scans over many rows are split into blocks (by borough partition, and by
+ * date within large partitions) that are scanned in parallel on a
+ * ForkJoinPool. Small scans and index lookups run on the calling thread, as
+ * handing them to other threads would cost more than it saves. The pool is
+ * shared by every executor with the same parallelism, so replacing the data
+ * (and with it the executor) does not start new threads.
+ *
+ * @version 2026.10.18
+ */
+public class QueryExecutor {
+    // Scans of fewer rows than this are not worth running in parallel, unless
+    // set otherwise with setParallelThreshold()
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 50_000;
+
+    // Smallest block of rows given its own task
+    private static final int MIN_BLOCK_SIZE = 8_192;
+
+    // Number of blocks given to each thread, so that uneven blocks balance out
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    // Pools that run the blocks of parallel scans, by parallelism, created when
+    // first needed (guarded by itself)
+    private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+    private final ColumnStore store;
+
+    // Number of threads that scans are split over (1 to always scan on the
+    // calling thread)
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    // Fewest rows that a scan is split over the threads for
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * @param store the store to answer queries over
+     */
+    public QueryExecutor(ColumnStore store) {
+        this.store = store;
+    }
+
+    /**
+     * Returns an executor over another store, e.g. a newer version of the
+     * data, with the same settings as this one.
+     *
+     * @param newStore the store to answer queries over
+     * @return the new executor
+     */
+    public synchronized QueryExecutor forStore(ColumnStore newStore) {
+        QueryExecutor executor = new QueryExecutor(newStore);
+        executor.parallelism = parallelism;
+        executor.parallelThreshold = parallelThreshold;
+        return executor;
+    }
+
+    /**
+     * Sets the number of threads that large scans are split over.
+     *
+     * @param parallelism the number of threads (1 to never scan in parallel)
+     * @throws IllegalArgumentException if parallelism is less than 1
+     */
+    public synchronized void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return the number of threads that large scans are split over
+     */
+    public synchronized int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets how many rows a scan must visit before it is split over several
+     * threads. Smaller scans run on the calling thread.
+     *
+     * @param rows the fewest rows of a parallel scan (0 to split every scan,
+     *             if the parallelism is more than 1)
+     * @throws IllegalArgumentException if rows is negative
+     */
+    public synchronized void setParallelThreshold(int rows) {
+        if (rows < 0) {
+            throw new IllegalArgumentException("The parallel threshold cannot be negative: " + rows);
+        }
+        parallelThreshold = rows;
+    }
+
+    /**
+     * @return the fewest rows that a scan is split over several threads for
+     */
+    public synchronized int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Answers a query, using the plan chosen by QueryPlan.choose().
+     *
+     * @param query the query to answer
+     * @return the groups of rows matched by the query and their aggregates
+     */
+    public QueryResult execute(DatasetQuery query) {
+        QueryPlan plan = QueryPlan.choose(query);
+
+        List<Block> blocks = new ArrayList<>();
+        long rowCount = 0;
+        for (int boroughId = 0; boroughId < store.getPartitionCount(); boroughId++) {
+            if (query.includesBorough(boroughId)) {
+                Block block = new Block(query, plan, store.getPartition(boroughId));
+                blocks.add(block);
+                rowCount += block.end - block.first;
+            }
+        }
+
+        TreeMap<Integer, AggregateState[]> groups = new TreeMap<>();
+        // With no rows to scan there is nothing to split, even if the threshold
+        // is 0
+        ForkJoinPool parallelPool = plan != QueryPlan.SCAN || rowCount == 0 || rowCount < getParallelThreshold()
+                ? null : getPool();
+        List<Block> splitBlocks = parallelPool == null ? blocks
+                : split(blocks, rowCount, parallelPool.getParallelism());
+        if (parallelPool == null || splitBlocks.isEmpty()) {
+            for (Block block : blocks) {
+                merge(groups, block.execute());
+            }
+        } else {
+            merge(groups, parallelPool.invoke(new BlockTask(splitBlocks, 0, splitBlocks.size())));
+        }
+
+        return new QueryResult(query, plan, groups);
+    }
+
+    /**
+     * @return the pool to run parallel scans on, or null if scans should run on
+     *         the calling thread
+     */
+    private ForkJoinPool getPool() {
+        int threads = getParallelism();
+        if (threads == 1) {
+            return null;
+        }
+        synchronized (pools) {
+            return pools.computeIfAbsent(threads, ForkJoinPool::new);
+        }
+    }
+
+    /**
+     * Splits the blocks of large partitions into smaller blocks of consecutive
+     * dates, so that every thread gets a few blocks of a similar size.
+     *
+     * @param blocks      a block for each partition
+     * @param rowCount    the number of rows in all the blocks
+     * @param threadCount the number of threads the blocks are shared between
+     * @return the blocks after splitting
+     */
+    private List<Block> split(List<Block> blocks, long rowCount, int threadCount) {
+        long blockSize = Math.max(MIN_BLOCK_SIZE, rowCount / ((long) threadCount * BLOCKS_PER_THREAD));
+
+        List<Block> splitBlocks = new ArrayList<>();
+        for (Block block : blocks) {
+            for (int first = block.first; first < block.end; first += blockSize) {
+                int end = (int) Math.min(block.end, first + blockSize);
+                splitBlocks.add(new Block(block, first, end));
+            }
+        }
+        return splitBlocks;
+    }
+
+    /**
+     * A range of rows of one partition that is answered on its own, giving
+     * partial aggregates.
+     */
+    private class Block {
+        private final DatasetQuery query;
+        private final QueryPlan plan;
+        private final BoroughPartition partition;
+
+        // Positions of the block's first row, and just after its last row, in the partition
+        private final int first;
+        private final int end;
+
+        /**
+         * Creates a block of a partition's rows in the query's date range.
+         */
+        Block(DatasetQuery query, QueryPlan plan, BoroughPartition partition) {
+            this.query = query;
+            this.plan = plan;
+            this.partition = partition;
+            this.first = partition.findFirstIndexFrom(query.getFromDay());
+            this.end = Math.max(first, partition.findFirstIndexAfter(query.getToDay()));
+        }
+
+        /**
+         * Creates a block of some of the rows of another block.
+         */
+        Block(Block block, int first, int end) {
+            this.query = block.query;
+            this.plan = block.plan;
+            this.partition = block.partition;
+            this.first = first;
+            this.end = end;
+        }
+
+        /**
+         * @return the partial aggregates of each group found in the block
+         */
+        Map<Integer, AggregateState[]> execute() {
+            switch (plan) {
+                case INDEX:
+                    return readIndexes(query, partition);
+                case ROLLUP:
+                    return readRollups(query, partition, first, end);
+                default:
+                    Map<Integer, AggregateState[]> groups = new TreeMap<>();
+                    scan(query, partition.cursorAt(first, end), partition.getBoroughId(), groups);
+                    return groups;
+            }
+        }
+    }
+
+    /**
+     * Answers a range of blocks, splitting the range in half and answering the
+     * halves in parallel until a single block is left.
+     */
+    private static class BlockTask extends RecursiveTask<Map<Integer, AggregateState[]>> {
+        private static final long serialVersionUID = 1L;
+
+        // Never serialized, the task only runs in this process
+        private final transient List<Block> blocks;
+        private final int from;
+        private final int to;
+
+        BlockTask(List<Block> blocks, int from, int to) {
+            this.blocks = blocks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Integer, AggregateState[]> compute() {
+            if (to - from <= 0) {
+                return new TreeMap<>();
+            }
+            if (to - from == 1) {
+                return blocks.get(from).execute();
+            }
+
+            int middle = (from + to) >>> 1;
+            BlockTask firstHalf = new BlockTask(blocks, from, middle);
+            firstHalf.fork();
+            Map<Integer, AggregateState[]> groups = new BlockTask(blocks, middle, to).compute();
+            merge(groups, firstHalf.join());
+            return groups;
+        }
+    }
+
+    /**
+     * Answers a query from the running totals and latest-value index of a
+     * partition, without visiting its rows. The planner only chooses this for
+     * queries that these indexes can answer.
+     */
+    private Map<Integer, AggregateState[]> readIndexes(DatasetQuery query, BoroughPartition partition) {
+        Map<Integer, AggregateState[]> groups = new TreeMap<>();
+        int fromDay = query.getFromDay();
+        int toDay = query.getToDay();
+        if (partition.getRowCount(fromDay, toDay) == 0) {
+            return groups;
+        }
+
+        List<DatasetQuery.Aggregation> aggregations = query.getAggregations();
+        AggregateState[] states = createStates(aggregations.size());
+        for (int i = 0; i < states.length; i++) {
+            DataField field = aggregations.get(i).getField();
+            if (aggregations.get(i).getAggregate() == Aggregate.LAST) {
+                int index = partition.findLastValidIndex(field, fromDay, toDay);
+                if (index >= 0) {
+                    int row = partition.getRow(index);
+                    states[i].setLastIfNewer(store.getEpochDay(row), row, store.getInt(row, field));
+                }
+            } else {
+                states[i].addTotals(partition.getValueCount(field, fromDay, toDay),
+                        partition.getSum(field, fromDay, toDay));
+            }
+        }
+
+        groups.put(query.getGroupBy().getKey(fromDay, partition.getBoroughId()), states);
+        return groups;
+    }
+
+    /**
+     * Answers a query from the weekly or monthly rollups of a partition. Each
+     * week or month whose rows are all in the date range is read from its
+     * rollup, and the rows of weeks or months that are only partly in the
+     * range are visited one by one.
+     *
+     * Queries grouped by week or month use the rollup of that size; queries
+     * grouped by borough (or not at all) use the monthly rollup.
+     *
+     * @param first the position of the first row in the date range
+     * @param end   the position just after the last row in the date range
+     */
+    private Map<Integer, AggregateState[]> readRollups(DatasetQuery query, BoroughPartition partition, int first,
+            int end) {
+        Map<Integer, AggregateState[]> groups = new TreeMap<>();
+        List<DatasetQuery.Aggregation> aggregations = query.getAggregations();
+        GroupBy groupBy = query.getGroupBy();
+        RollupTable rollup = partition.getRollup(groupBy == GroupBy.WEEK ? GroupBy.WEEK : GroupBy.MONTH);
+        int boroughId = partition.getBoroughId();
+
+        int index = first;
+        while (index < end) {
+            int bucket = rollup.findBucket(index);
+            int bucketEnd = Math.min(end, rollup.getEndIndex(bucket));
+
+            if (rollup.getFirstIndex(bucket) == index && rollup.getEndIndex(bucket) == bucketEnd) {
+                // Every row of the bucket is in the range
+                int key = groupBy.getKey(rollup.getKey(bucket), boroughId);
+                AggregateState[] states = groups.computeIfAbsent(key, k -> createStates(aggregations.size()));
+                for (int i = 0; i < states.length; i++) {
+                    rollup.addTo(states[i], aggregations.get(i).getField(), bucket);
+                }
+            } else {
+                // A ragged edge of the range
+                scan(query, partition.cursorAt(index, bucketEnd), boroughId, groups);
+            }
+            index = bucketEnd;
+        }
+        return groups;
+    }
+
+    /**
+     * Answers a query by visiting each of the rows of a borough under a cursor,
+     * adding their values to the given groups.
+     */
+    private void scan(DatasetQuery query, ColumnCursor cursor, int boroughId,
+            Map<Integer, AggregateState[]> groups) {
+        List<ColumnPredicate> predicates = query.getPredicates();
+        List<DatasetQuery.Aggregation> aggregations = query.getAggregations();
+        GroupBy groupBy = query.getGroupBy();
+
+        // Rows are visited in date order, so the group rarely changes between rows
+        int currentDay = Integer.MIN_VALUE;
+        AggregateState[] states = null;
+
+        while (cursor.next()) {
+            int row = cursor.getRow();
+            if (!matchesAll(predicates, row)) {
+                continue;
+            }
+
+            int day = cursor.getEpochDay();
+            if (states == null || day != currentDay) {
+                currentDay = day;
+                states = groups.computeIfAbsent(groupBy.getKey(day, boroughId),
+                        key -> createStates(aggregations.size()));
+            }
+
+            for (int i = 0; i < states.length; i++) {
+                DataField field = aggregations.get(i).getField();
+                if (!cursor.isNull(field)) {
+                    states[i].add(day, row, cursor.getInt(field));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true if the row matches every predicate
+     */
+    private boolean matchesAll(List<ColumnPredicate> predicates, int row) {
+        for (ColumnPredicate predicate : predicates) {
+            if (!predicate.matches(store, row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merges partial aggregates into the groups of a result.
+     *
+     * @param groups  the groups to merge into
+     * @param partial the partial aggregates to merge
+     */
+    private static void merge(Map<Integer, AggregateState[]> groups, Map<Integer, AggregateState[]> partial) {
+        for (Map.Entry<Integer, AggregateState[]> entry : partial.entrySet()) {
+            AggregateState[] states = groups.get(entry.getKey());
+            if (states == null) {
+                groups.put(entry.getKey(), entry.getValue());
+            } else {
+                for (int i = 0; i < states.length; i++) {
+                    states[i].merge(entry.getValue()[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a new, empty state for each aggregate
+     */
+    private static AggregateState[] createStates(int count) {
+        AggregateState[] states = new AggregateState[count];
+        for (int i = 0; i < count; i++) {
+            states[i] = new AggregateState();
+        }
+        return states;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * The ways a DatasetQuery can be answered, from fastest to slowest. The
+ * planner picks the fastest one that can answer the whole query.
+ *
+ * @version 2026.10.18
+ */
+public enum QueryPlan {
+    // Each borough's aggregates are read from its running totals and
+    // latest-value index, without visiting any rows
+    INDEX,
+    // Whole weeks or months in the date range are read from the weekly or
+    // monthly rollups, and only the rows at the edges of the range are visited
+    ROLLUP,
+    // The rows of each borough in the date range are visited one by one
+    SCAN;
+
+    /**
+     * Chooses how to answer a query. The indexes of a BoroughPartition can
+     * answer queries that have no conditions on values, are grouped by borough
+     * (or not at all), and only ask for totals of additive fields or for last
+     * values. The rollups can answer any other query without conditions on
+     * values, unless it is grouped by day.
+     *
+     * @param query the query to answer
+     * @return the plan to answer it with
+     */
+    public static QueryPlan choose(DatasetQuery query) {
+        // Conditions have to be checked on every row
+        if (!query.getPredicates().isEmpty()) {
+            return SCAN;
+        }
+
+        switch (query.getGroupBy()) {
+            case DAY:
+                return SCAN;
+            case WEEK:
+            case MONTH:
+                return ROLLUP;
+            default:
+                for (DatasetQuery.Aggregation aggregation : query.getAggregations()) {
+                    if (!canUseIndex(aggregation)) {
+                        return ROLLUP;
+                    }
+                }
+                return INDEX;
+        }
+    }
+
+    /**
+     * @return true if the aggregate can be read from a partition's indexes
+     */
+    private static boolean canUseIndex(DatasetQuery.Aggregation aggregation) {
+        switch (aggregation.getAggregate()) {
+            case LAST:
+                return true;
+            case SUM:
+            case AVG:
+            case COUNT:
+                return aggregation.getField().isAdditive();
+            default:
+                return false;
+        }
+    }
+}
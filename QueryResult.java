@@ -0,0 +1,120 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The answer to a DatasetQuery: one group for each borough, date, week or
+ * month that had matching rows (or a single group if the query was not
+ * grouped), in order of their keys.
+ *
+ * @version 2026.10.18
+ */
+public class QueryResult {
+    private final DatasetQuery query;
+    private final QueryPlan plan;
+    private final List<Group> groups;
+
+    /**
+     * @param query  the query that was answered
+     * @param plan   how the query was answered
+     * @param states the aggregate states of each group, sorted by key
+     */
+    QueryResult(DatasetQuery query, QueryPlan plan, Map<Integer, AggregateState[]> states) {
+        this.query = query;
+        this.plan = plan;
+
+        List<Group> groupList = new ArrayList<>(states.size());
+        for (Map.Entry<Integer, AggregateState[]> entry : states.entrySet()) {
+            groupList.add(new Group(entry.getKey(), entry.getValue()));
+        }
+        this.groups = Collections.unmodifiableList(groupList);
+    }
+
+    /**
+     * @return the query that was answered
+     */
+    public DatasetQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @return how the query was answered (from an index, rollups or a scan)
+     */
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return the groups of the result, in order of their keys
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * @return true if no rows matched the query
+     */
+    public boolean isEmpty() {
+        return groups.isEmpty();
+    }
+
+    /**
+     * @return roughly how many bytes the result takes up in memory
+     */
+    public long getEstimatedSize() {
+        int valueCount = query.getAggregations().size();
+        return 64 + groups.size() * (48L + valueCount * 24L);
+    }
+
+    /**
+     * The aggregates of one group of rows.
+     */
+    public class Group {
+        private final int key;
+        private final Double[] values;
+
+        private Group(int key, AggregateState[] states) {
+            this.key = key;
+            this.values = new Double[states.length];
+            List<DatasetQuery.Aggregation> aggregations = query.getAggregations();
+            for (int i = 0; i < states.length; i++) {
+                values[i] = states[i].getResult(aggregations.get(i).getAggregate());
+            }
+        }
+
+        /**
+         * @return the key of the group: a borough id, the epoch day of the
+         *         first day of the group, or 0 if the query was not grouped
+         */
+        public int getKey() {
+            return key;
+        }
+
+        /**
+         * @return the name of the group's borough (for queries grouped by
+         *         borough)
+         */
+        public String getBorough() {
+            return BoroughDictionary.getInstance().getName(key);
+        }
+
+        /**
+         * @return the first day of the group's day, week or month (for queries
+         *         grouped by date)
+         */
+        public LocalDate getDate() {
+            return LocalDate.ofEpochDay(key);
+        }
+
+        /**
+         * @param aggregationIndex the position of the aggregate in the query
+         * @return the value of the aggregate, or null if the group had no
+         *         values for its field
+         */
+        public Double getValue(int aggregationIndex) {
+            return values[aggregationIndex];
+        }
+    }
+}
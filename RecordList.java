@@ -0,0 +1,53 @@
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list of the CovidData records of consecutive rows of a
+ * ColumnStore, newest first. A record is only created when it is read, so
+ * taking a list of a date range costs nothing however many rows it covers,
+ * and the columns can be held anywhere (see ColumnData).
+ *
+ * Each call to get() creates a new record, so callers that read a record
+ * more than once should keep it.
+ *
+ * @version 2026.10.18
+ */
+public class RecordList extends AbstractList<CovidData> implements RandomAccess {
+    private final ColumnStore store;
+    private final int firstRow;
+    private final int endRow;
+
+    /**
+     * @param store    the store holding the rows
+     * @param firstRow the first row of the list (its last element)
+     * @param endRow   the row just after the last row of the list (whose row
+     *                 is its first element)
+     */
+    public RecordList(ColumnStore store, int firstRow, int endRow) {
+        this.store = store;
+        this.firstRow = firstRow;
+        this.endRow = endRow;
+    }
+
+    @Override
+    public CovidData get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size());
+        }
+        return store.getRecord(endRow - 1 - index);
+    }
+
+    @Override
+    public int size() {
+        return endRow - firstRow;
+    }
+
+    @Override
+    public RecordList subList(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size() || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Range " + fromIndex + " to " + toIndex + " out of bounds for size "
+                    + size());
+        }
+        return new RecordList(store, endRow - toIndex, endRow - fromIndex);
+    }
+}
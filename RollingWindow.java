@@ -0,0 +1,123 @@
+/**
+ * The rolling sum and average of a field over the last few days, for every row
+ * of one borough partition. The window of a row holds the rows dated on the
+ * same day or on one of the days before it, e.g. the 7 days up to and
+ * including it. Null values are left out of both the sum and the average.
+ *
+ * Every window is worked out in a single pass over the partition: each row is
+ * added when the window reaches it and taken away when the window moves past
+ * it.
+ *
+ * @version 2026.10.18
+ */
+public class RollingWindow {
+    private final ColumnStore store;
+    private final BoroughPartition partition;
+    private final DataField field;
+    private final int days;
+
+    // For each row of the partition: the sum of the non-null values in its
+    // window, and the number of them
+    private final long[] sums;
+    private final int[] counts;
+
+    /**
+     * Works out the windows of every row of a partition.
+     *
+     * @param store     the store holding the partition's rows
+     * @param partition the partition to work out the windows of
+     * @param field     the field to add up
+     * @param days      the number of days in each window
+     */
+    RollingWindow(ColumnStore store, BoroughPartition partition, DataField field, int days) {
+        this.store = store;
+        this.partition = partition;
+        this.field = field;
+        this.days = days;
+
+        int size = partition.size();
+        sums = new long[size];
+        counts = new int[size];
+
+        // Rows are in date order, so the window is the rows from oldest to i
+        long sum = 0;
+        int count = 0;
+        int oldest = 0;
+        for (int i = 0; i < size; i++) {
+            int row = partition.getRow(i);
+            if (!store.isNull(row, field)) {
+                sum += store.getInt(row, field);
+                count++;
+            }
+
+            // Take away the rows that are now too old for the window
+            long firstDay = (long) store.getEpochDay(row) - days + 1;
+            while (store.getEpochDay(partition.getRow(oldest)) < firstDay) {
+                int oldRow = partition.getRow(oldest);
+                if (!store.isNull(oldRow, field)) {
+                    sum -= store.getInt(oldRow, field);
+                    count--;
+                }
+                oldest++;
+            }
+
+            sums[i] = sum;
+            counts[i] = count;
+        }
+    }
+
+    /**
+     * @return the field that is added up
+     */
+    public DataField getField() {
+        return field;
+    }
+
+    /**
+     * @return the number of days in each window
+     */
+    public int getDays() {
+        return days;
+    }
+
+    /**
+     * @return the number of rows in the partition, each with its own window
+     */
+    public int size() {
+        return sums.length;
+    }
+
+    /**
+     * @param index the position of a row in the partition
+     * @return the date of the row, as an epoch day
+     */
+    public int getEpochDay(int index) {
+        return store.getEpochDay(partition.getRow(index));
+    }
+
+    /**
+     * @param index the position of a row in the partition
+     * @return the sum of the non-null values in the row's window (0 if there
+     *         are none)
+     */
+    public long getSum(int index) {
+        return sums[index];
+    }
+
+    /**
+     * @param index the position of a row in the partition
+     * @return the number of non-null values in the row's window
+     */
+    public int getCount(int index) {
+        return counts[index];
+    }
+
+    /**
+     * @param index the position of a row in the partition
+     * @return the average of the non-null values in the row's window, or null
+     *         if there are none
+     */
+    public Double getAverage(int index) {
+        return counts[index] == 0 ? null : (double) sums[index] / counts[index];
+    }
+}
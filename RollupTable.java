@@ -0,0 +1,264 @@
+import java.util.Arrays;
+
+/**
+ * Pre-aggregated values of one borough partition for each week or month:
+ * for every field, the sum, count, smallest, largest and last non-null value
+ * of the rows in each bucket. A query over whole weeks or months reads one
+ * bucket instead of every day in it.
+ *
+ * @version 2026.10.18
+ */
+public class RollupTable {
+    private final ColumnStore store;
+    private final BoroughPartition partition;
+    private final GroupBy groupBy;
+
+    // Number of buckets with rows in the partition
+    private final int bucketCount;
+
+    // For each bucket: its key (the epoch day it starts on), and the positions
+    // of its first row and just after its last row in the partition
+    private final int[] keys;
+    private final int[] firstIndexes;
+    private final int[] endIndexes;
+
+    // For each field and bucket: the aggregates of the non-null values, and the
+    // position of the last one in the partition (-1 if there are none)
+    private final long[][] sums;
+    private final int[][] counts;
+    private final int[][] mins;
+    private final int[][] maxes;
+    private final int[][] lastIndexes;
+
+    /**
+     * Builds the rollups of a partition.
+     *
+     * @param store     the store holding the partition's rows
+     * @param partition the partition to aggregate
+     * @param groupBy   the size of the buckets (WEEK or MONTH)
+     */
+    RollupTable(ColumnStore store, BoroughPartition partition, GroupBy groupBy) {
+        this(store, partition, groupBy, null, new int[0]);
+    }
+
+    /**
+     * Builds the rollups of a partition, keeping the buckets of an older
+     * version of the partition that cannot have changed. Only the last bucket
+     * of the older rollups may have gained rows, so it, any new buckets and
+     * the buckets holding revised rows are the only ones aggregated.
+     *
+     * @param store          the store holding the partition's rows
+     * @param partition      the partition to aggregate
+     * @param groupBy        the size of the buckets (WEEK or MONTH)
+     * @param previous       the rollups of the partition before rows were
+     *                       added or revised, or null to aggregate every
+     *                       bucket
+     * @param revisedIndexes the positions in the partition of the older rows
+     *                       whose values may have changed
+     */
+    private RollupTable(ColumnStore store, BoroughPartition partition, GroupBy groupBy, RollupTable previous,
+            int[] revisedIndexes) {
+        this.store = store;
+        this.partition = partition;
+        this.groupBy = groupBy;
+
+        // Buckets before the older last bucket are kept as they are, and the
+        // rest are found from the first row of that bucket
+        int keptBuckets = 0;
+        int start = 0;
+        if (previous != null && previous.bucketCount > 0) {
+            keptBuckets = previous.bucketCount - 1;
+            start = previous.firstIndexes[keptBuckets];
+        }
+
+        // Rows are in date order, so each bucket is a run of consecutive rows
+        int size = partition.size();
+        int[] bucketKeys = new int[keptBuckets + size - start];
+        int[] bucketFirstIndexes = new int[keptBuckets + size - start];
+        if (keptBuckets > 0) {
+            System.arraycopy(previous.keys, 0, bucketKeys, 0, keptBuckets);
+            System.arraycopy(previous.firstIndexes, 0, bucketFirstIndexes, 0, keptBuckets);
+        }
+        int buckets = keptBuckets;
+        int previousDay = 0;
+        for (int i = start; i < size; i++) {
+            int day = store.getEpochDay(partition.getRow(i));
+            if (i == start || day != previousDay) {
+                int key = groupBy.getKey(day, partition.getBoroughId());
+                if (i == start || key != bucketKeys[buckets - 1]) {
+                    bucketKeys[buckets] = key;
+                    bucketFirstIndexes[buckets] = i;
+                    buckets++;
+                }
+                previousDay = day;
+            }
+        }
+
+        bucketCount = buckets;
+        keys = Arrays.copyOf(bucketKeys, buckets);
+        firstIndexes = Arrays.copyOf(bucketFirstIndexes, buckets);
+        endIndexes = new int[buckets];
+        for (int b = 0; b < buckets; b++) {
+            endIndexes[b] = b + 1 < buckets ? firstIndexes[b + 1] : size;
+        }
+
+        int fieldCount = DataField.values().length;
+        sums = new long[fieldCount][];
+        counts = new int[fieldCount][];
+        mins = new int[fieldCount][];
+        maxes = new int[fieldCount][];
+        lastIndexes = new int[fieldCount][];
+        for (DataField field : DataField.values()) {
+            aggregate(field, previous, keptBuckets);
+        }
+
+        // Rows are never moved by a revision, so the buckets are the same
+        for (int index : revisedIndexes) {
+            int bucket = findBucket(index);
+            if (bucket < keptBuckets) {
+                for (DataField field : DataField.values()) {
+                    aggregateBucket(field, bucket);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the rollups of the partition of a newer store, which holds the
+     * rows of this table's partition, some of them with revised values,
+     * followed by any newer rows.
+     *
+     * @param newStore       the store holding the rows
+     * @param newPartition   the partition of the borough in the new store
+     * @param revisedIndexes the positions in the partition of the rows whose
+     *                       values may have been revised
+     * @return the rollups of the new partition
+     */
+    RollupTable updated(ColumnStore newStore, BoroughPartition newPartition, int[] revisedIndexes) {
+        return new RollupTable(newStore, newPartition, groupBy, this, revisedIndexes);
+    }
+
+    /**
+     * Works out the aggregates of a field for every bucket, copying those of
+     * the buckets that are kept from the older rollups.
+     *
+     * @param previous    the older rollups, or null if no buckets are kept
+     * @param keptBuckets the number of buckets to copy from the older rollups
+     */
+    private void aggregate(DataField field, RollupTable previous, int keptBuckets) {
+        int f = field.ordinal();
+        long[] fieldSums = new long[bucketCount];
+        int[] fieldCounts = new int[bucketCount];
+        int[] fieldMins = new int[bucketCount];
+        int[] fieldMaxes = new int[bucketCount];
+        int[] fieldLastIndexes = new int[bucketCount];
+        if (keptBuckets > 0) {
+            System.arraycopy(previous.sums[f], 0, fieldSums, 0, keptBuckets);
+            System.arraycopy(previous.counts[f], 0, fieldCounts, 0, keptBuckets);
+            System.arraycopy(previous.mins[f], 0, fieldMins, 0, keptBuckets);
+            System.arraycopy(previous.maxes[f], 0, fieldMaxes, 0, keptBuckets);
+            System.arraycopy(previous.lastIndexes[f], 0, fieldLastIndexes, 0, keptBuckets);
+        }
+
+        sums[f] = fieldSums;
+        counts[f] = fieldCounts;
+        mins[f] = fieldMins;
+        maxes[f] = fieldMaxes;
+        lastIndexes[f] = fieldLastIndexes;
+        for (int b = keptBuckets; b < bucketCount; b++) {
+            aggregateBucket(field, b);
+        }
+    }
+
+    /**
+     * Works out the aggregates of a field for one bucket from its rows.
+     */
+    private void aggregateBucket(DataField field, int bucket) {
+        int f = field.ordinal();
+        long sum = 0;
+        int count = 0;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int last = -1;
+        for (int i = firstIndexes[bucket]; i < endIndexes[bucket]; i++) {
+            int row = partition.getRow(i);
+            if (!store.isNull(row, field)) {
+                int value = store.getInt(row, field);
+                sum += value;
+                count++;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                last = i;
+            }
+        }
+        sums[f][bucket] = sum;
+        counts[f][bucket] = count;
+        mins[f][bucket] = min;
+        maxes[f][bucket] = max;
+        lastIndexes[f][bucket] = last;
+    }
+
+    /**
+     * @return the size of the buckets (WEEK or MONTH)
+     */
+    public GroupBy getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @param index the position of a row in the partition
+     * @return the bucket holding the row
+     */
+    public int findBucket(int index) {
+        int low = 0;
+        int high = bucketCount - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (firstIndexes[middle] <= index) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the epoch day that the bucket starts on
+     */
+    public int getKey(int bucket) {
+        return keys[bucket];
+    }
+
+    /**
+     * @return the position of the bucket's first row in the partition
+     */
+    public int getFirstIndex(int bucket) {
+        return firstIndexes[bucket];
+    }
+
+    /**
+     * @return the position just after the bucket's last row in the partition
+     */
+    public int getEndIndex(int bucket) {
+        return endIndexes[bucket];
+    }
+
+    /**
+     * Adds all the values of a field in a bucket to an aggregate state.
+     *
+     * @param state  the state to add to
+     * @param field  the field whose values are added
+     * @param bucket the bucket whose values are added
+     */
+    public void addTo(AggregateState state, DataField field, int bucket) {
+        int f = field.ordinal();
+        state.addSummary(counts[f][bucket], sums[f][bucket], mins[f][bucket], maxes[f][bucket]);
+
+        int lastIndex = lastIndexes[f][bucket];
+        if (lastIndex >= 0) {
+            int row = partition.getRow(lastIndex);
+            state.setLastIfNewer(store.getEpochDay(row), row, store.getInt(row, field));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * A hash index from the key of a row, its date and borough, to the index of
+ * the row. There is at most one row for each borough on each day, so the
+ * index is used to tell a revised row (one whose key is already known) from a
+ * new one, and to find the row it replaces, without searching.
+ *
+ * The index is not thread-safe.
+ *
+ * @version 2026.10.18
+ */
+public class RowKeyIndex {
+    // Open addressing table of each key and (row + 1) (0 for an empty slot),
+    // at most half full
+    private long[] keys;
+    private int[] rows;
+    private int size = 0;
+
+    /**
+     * @param expectedRows the number of rows to make room for
+     */
+    public RowKeyIndex(int expectedRows) {
+        int capacity = Integer.highestOneBit(Math.max(expectedRows, 8) * 2) * 2;
+        keys = new long[capacity];
+        rows = new int[capacity];
+    }
+
+    /**
+     * Creates an index of the given rows. If rows share a key, the first of
+     * them is kept.
+     *
+     * @param data the rows to index
+     * @return an index of every row of the data
+     */
+    public static RowKeyIndex of(ColumnData data) {
+        RowKeyIndex index = new RowKeyIndex(data.size());
+        for (int row = 0; row < data.size(); row++) {
+            index.putIfAbsent(data.getEpochDay(row), data.getBoroughId(row), row);
+        }
+        return index;
+    }
+
+    /**
+     * @param epochDay  the date of the row, as an epoch day
+     * @param boroughId the id of the borough of the row
+     * @return the row with the key, or -1 if there is none
+     */
+    public int find(int epochDay, int boroughId) {
+        long key = getKey(epochDay, boroughId);
+        int slot = mix(key) & (keys.length - 1);
+        while (rows[slot] != 0) {
+            if (keys[slot] == key) {
+                return rows[slot] - 1;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Adds a row to the index, unless there is already a row with the same
+     * key.
+     *
+     * @param epochDay  the date of the row, as an epoch day
+     * @param boroughId the id of the borough of the row
+     * @param row       the index of the row
+     * @return the row that already had the key, or -1 if the row was added
+     */
+    public int putIfAbsent(int epochDay, int boroughId, int row) {
+        long key = getKey(epochDay, boroughId);
+        int slot = mix(key) & (keys.length - 1);
+        while (rows[slot] != 0) {
+            if (keys[slot] == key) {
+                return rows[slot] - 1;
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+
+        keys[slot] = key;
+        rows[slot] = row + 1;
+        if (++size * 2 > keys.length) {
+            grow();
+        }
+        return -1;
+    }
+
+    /**
+     * @return the number of keys in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Doubles the number of slots and places every key again.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldRows = rows;
+        keys = new long[oldKeys.length * 2];
+        rows = new int[oldRows.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldRows[i] != 0) {
+                int slot = mix(oldKeys[i]) & (keys.length - 1);
+                while (rows[slot] != 0) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = oldKeys[i];
+                rows[slot] = oldRows[i];
+            }
+        }
+    }
+
+    /**
+     * @return the date and borough id packed into one number
+     */
+    private static long getKey(int epochDay, int boroughId) {
+        return ((long) epochDay << 32) | (boroughId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Spreads the bits of a key, so that neighbouring days and boroughs use
+     * different slots.
+     */
+    private static int mix(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
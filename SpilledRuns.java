@@ -0,0 +1,281 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Runs of rows sorted by date that have been spilled to temporary files, for
+ * sorting more rows than fit on the heap (an external merge sort). Each run
+ * is written as by ColumnBatch.writeTo() and memory-mapped back, so only one
+ * run needs to be held on the heap at a time, while it is being sorted.
+ *
+ * mergeTo() merges the runs by date straight into a buffer, e.g. a mapped
+ * snapshot file, so the merged rows are never held on the heap either. A row
+ * for the same date and borough as a row of an earlier run is a revision of
+ * it: the merged rows hold one row for each date and borough, in the place of
+ * the first one, with the values of the last one (as with
+ * ColumnBatch.withoutDuplicateKeys()).
+ *
+ * The temporary files are deleted by close().
+ *
+ * @version 2026.10.18
+ */
+public class SpilledRuns implements AutoCloseable {
+    private static final int FIELD_COUNT = DataField.values().length;
+
+    // Directory of the temporary files (null for the default one)
+    private final File directory;
+
+    private final List<Path> files = new ArrayList<>();
+    private final List<OffHeapColumnBatch> runs = new ArrayList<>();
+    private long spilledBytes = 0;
+
+    // Largest borough id in any run
+    private int maxBoroughId = -1;
+
+    // Number of rows once merged, worked out when first needed (-1 until then)
+    private int mergedSize = -1;
+
+    /**
+     * @param directory the directory to write the temporary files to, or null
+     *                  for the default temporary directory
+     */
+    public SpilledRuns(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writes a run to a temporary file. The run may then be discarded, as it
+     * is read back from the file when the runs are merged.
+     *
+     * @param run rows sorted by date (oldest first), with at most one row for
+     *            each date and borough
+     * @throws IOException if the file could not be written
+     */
+    public void add(ColumnData run) throws IOException {
+        if (run.size() == 0) {
+            return;
+        }
+
+        Path file = directory == null ? Files.createTempFile("covid-run-", ".tmp")
+                : Files.createTempFile(directory.toPath(), "covid-run-", ".tmp");
+        files.add(file);
+        file.toFile().deleteOnExit();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, run.getByteSize());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            run.writeTo(buffer);
+            runs.add(OffHeapColumnBatch.wrap(buffer.clear(), run.size()));
+        }
+
+        for (int row = 0; row < run.size(); row++) {
+            maxBoroughId = Math.max(maxBoroughId, run.getBoroughId(row));
+        }
+        spilledBytes += run.getByteSize();
+        mergedSize = -1;
+    }
+
+    /**
+     * @return the number of runs spilled
+     */
+    public int getRunCount() {
+        return runs.size();
+    }
+
+    /**
+     * @return the number of bytes written to the temporary files
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    /**
+     * @return the number of rows once the runs are merged, counting the rows
+     *         for the same date and borough once
+     */
+    public int size() {
+        if (mergedSize < 0) {
+            mergedSize = merge(null);
+        }
+        return mergedSize;
+    }
+
+    /**
+     * @return the number of bytes that mergeTo() needs
+     */
+    public long getByteSize() {
+        return ColumnBatch.getByteSize(size());
+    }
+
+    /**
+     * Merges the runs by date and writes the merged rows in the same layout
+     * as ColumnBatch.writeTo(). Each column is written in place as the rows
+     * are merged, so no row is held on the heap.
+     *
+     * @param buffer the buffer to write to, which must have getByteSize()
+     *               bytes remaining
+     */
+    public void mergeTo(ByteBuffer buffer) {
+        int size = size();
+        int start = buffer.position();
+        int nullBytes = ((size + 63) >>> 6) * Long.BYTES;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            int nullStart = getValuesStart(start, size, field) + size * Integer.BYTES;
+            for (int i = 0; i < nullBytes; i += Long.BYTES) {
+                buffer.putLong(nullStart + i, 0);
+            }
+        }
+
+        merge(buffer);
+        buffer.position(start + (int) getByteSize());
+    }
+
+    /**
+     * Merges the runs by date, taking the rows of each run up to the date of
+     * the run with the next oldest row in one go, as in
+     * ColumnBatch.mergeByDate(). Rows of the same date are merged in run
+     * order.
+     *
+     * @param buffer the buffer to write the merged rows to, from its position,
+     *               or null to only count them
+     * @return the number of merged rows
+     */
+    private int merge(ByteBuffer buffer) {
+        int[] positions = new int[runs.size()];
+        PriorityQueue<Integer> heads = new PriorityQueue<>(Math.max(1, runs.size()),
+                Comparator.<Integer>comparingInt(r -> runs.get(r).getEpochDay(positions[r]))
+                        .thenComparingInt(r -> r));
+        for (int r = 0; r < runs.size(); r++) {
+            heads.add(r);
+        }
+
+        // The merged row of each borough on the current date, so that a later
+        // run's row for it revises that row
+        int[] boroughRows = new int[maxBoroughId + 1];
+        int[] boroughDays = new int[maxBoroughId + 1];
+        boolean[] seen = new boolean[maxBoroughId + 1];
+        int size = buffer == null ? 0 : mergedSize;
+        int start = buffer == null ? 0 : buffer.position();
+
+        int merged = 0;
+        while (!heads.isEmpty()) {
+            int r = heads.poll();
+            OffHeapColumnBatch run = runs.get(r);
+            int from = positions[r];
+            int to = run.size();
+            if (!heads.isEmpty()) {
+                int next = heads.peek();
+                long nextDay = runs.get(next).getEpochDay(positions[next]);
+                to = findFirstRowFrom(run, r < next ? nextDay + 1L : nextDay, from);
+            }
+
+            for (int row = from; row < to; row++) {
+                int day = run.getEpochDay(row);
+                int id = run.getBoroughId(row);
+                int target;
+                if (seen[id] && boroughDays[id] == day) {
+                    target = boroughRows[id];
+                } else {
+                    target = merged++;
+                    seen[id] = true;
+                    boroughDays[id] = day;
+                    boroughRows[id] = target;
+                }
+
+                if (buffer != null) {
+                    writeRow(buffer, start, size, target, run, row);
+                }
+            }
+
+            positions[r] = to;
+            if (to < run.size()) {
+                heads.add(r);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Writes one row into its place in each column.
+     *
+     * @param buffer    the buffer holding the columns
+     * @param start     the position of the first column
+     * @param size      the number of rows in the columns
+     * @param target    the index of the row in the columns
+     * @param run       the run holding the row
+     * @param row       the index of the row in the run
+     */
+    private static void writeRow(ByteBuffer buffer, int start, int size, int target, ColumnData run, int row) {
+        int columnBytes = size * Integer.BYTES;
+        buffer.putInt(start + target * Integer.BYTES, run.getEpochDay(row));
+        buffer.putInt(start + columnBytes + target * Integer.BYTES, run.getBoroughId(row));
+
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            int valuesStart = getValuesStart(start, size, field);
+            buffer.putInt(valuesStart + target * Integer.BYTES, run.getValue(row, field));
+
+            // A revised row may clear the null bit of the row it replaces
+            int word = valuesStart + columnBytes + (target >>> 6) * Long.BYTES;
+            long bits = buffer.getLong(word);
+            bits = run.isNull(row, field) ? bits | (1L << target) : bits & ~(1L << target);
+            buffer.putLong(word, bits);
+        }
+    }
+
+    /**
+     * @return the position of the values of a field in columns of the given
+     *         number of rows, written from the given position
+     */
+    private static int getValuesStart(int start, int size, int field) {
+        int columnBytes = size * Integer.BYTES;
+        int nullBytes = ((size + 63) >>> 6) * Long.BYTES;
+        return start + 2 * columnBytes + field * (columnBytes + nullBytes);
+    }
+
+    /**
+     * @param run      a run of rows sorted by date
+     * @param epochDay a date, as an epoch day (may be one past the largest int)
+     * @param from     the row to search from
+     * @return the first row from the given one dated on or after the date
+     */
+    private static int findFirstRowFrom(ColumnData run, long epochDay, int from) {
+        int low = from;
+        int high = run.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (run.getEpochDay(middle) < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Deletes the temporary files. The runs cannot be merged afterwards.
+     */
+    @Override
+    public void close() {
+        runs.clear();
+        for (Path file : files) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                // Deleted when the application exits instead
+                System.out.println("Could not delete temporary file " + file + ": " + e);
+            }
+        }
+        files.clear();
+    }
+}
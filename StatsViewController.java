@@ -2,8 +2,6 @@ import java.time.LocalDate;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
 
 import javafx.animation.FadeTransition;
 import javafx.event.ActionEvent;
@@ -47,8 +45,16 @@ public class StatsViewController extends ViewController {
     @FXML
     private Label sumTotalDeathLabel, averageCasesLabel, highestDeathDateLabel;
 
-    // Stores the data within the date range selected
-    private ArrayList<CovidData> dataInDateRange;
+    // Stores the statistics of each borough within the date range selected
+    private QueryResult boroughStatistics;
+
+    // Positions of the aggregates in the query for boroughStatistics
+    private static final int SUM_RR_GMR = 0;
+    private static final int COUNT_RR_GMR = 1;
+    private static final int SUM_GP_GMR = 2;
+    private static final int COUNT_GP_GMR = 3;
+    private static final int LAST_TOTAL_DEATHS = 4;
+    private static final int LAST_TOTAL_CASES = 5;
 
     // Allows for transition between statistics
     private FadeTransition fadeIn;
@@ -100,7 +106,14 @@ public class StatsViewController extends ViewController {
      */
     protected void processDataInDateRange(LocalDate fromDate, LocalDate toDate) {
         if (dataset.isDateRangeValid(fromDate, toDate)) {
-            dataInDateRange = dataset.getDataInDateRange(fromDate, toDate);
+            boroughStatistics = dataset.query(new DatasetQuery(fromDate, toDate)
+                    .groupBy(GroupBy.BOROUGH)
+                    .aggregate(Aggregate.SUM, DataField.RETAIL_RECREATION_GMR)
+                    .aggregate(Aggregate.COUNT, DataField.RETAIL_RECREATION_GMR)
+                    .aggregate(Aggregate.SUM, DataField.GROCERY_PHARMACY_GMR)
+                    .aggregate(Aggregate.COUNT, DataField.GROCERY_PHARMACY_GMR)
+                    .aggregate(Aggregate.LAST, DataField.TOTAL_DEATHS)
+                    .aggregate(Aggregate.LAST, DataField.TOTAL_CASES));
         }
 
         refreshLabels();
@@ -166,7 +179,7 @@ public class StatsViewController extends ViewController {
             sumTotalDeathLabel.setText(getTotalNumberOfDeaths() + "");
             averageCasesLabel.setText(getAverageTotalCases() + "");
             highestDeathDateLabel.setText(
-                    dataset.getMostRecentDataWithFilter(dataInDateRange, CovidData::getTotalDeaths).get(0).getDate()
+                    dataset.getMostRecentData(DataField.TOTAL_DEATHS, fromDate, toDate).get(0).getDate()
                             + "");
         }
     }
@@ -180,13 +193,12 @@ public class StatsViewController extends ViewController {
     private int getTotalNumberOfDeaths() {
         int totalNumberOfDeaths = 0;
 
-        // gets the most recent record of every borough that is non-null in the
-        // total_deaths column
-        ArrayList<CovidData> mostRecentDataWithTotalDeaths = dataset.getMostRecentDataWithFilter(dataInDateRange,
-                CovidData::getTotalDeaths);
-
-        for (CovidData record : mostRecentDataWithTotalDeaths) {
-            totalNumberOfDeaths += record.getTotalDeaths();
+        // adds the most recent non-null total_deaths value of every borough
+        for (QueryResult.Group borough : boroughStatistics.getGroups()) {
+            Double totalDeaths = borough.getValue(LAST_TOTAL_DEATHS);
+            if (totalDeaths != null) {
+                totalNumberOfDeaths += totalDeaths.intValue();
+            }
         }
 
         return totalNumberOfDeaths;
@@ -200,16 +212,19 @@ public class StatsViewController extends ViewController {
      *         2 d.p.)
      */
     private double getAverageTotalCases() {
-        // gets the most recent record of every borough that is non-null in the
-        // total_cases column
-        ArrayList<CovidData> mostRecentDataWithTotalCases = dataset.getMostRecentDataWithFilter(dataInDateRange,
-                CovidData::getTotalCases);
-
-        List<Number> totalCasesData = mostRecentDataWithTotalCases.stream()
-                .map(CovidData::getTotalCases)
-                .collect(Collectors.toList());
+        double sum = 0;
+        int count = 0;
+
+        // averages the most recent non-null total_cases value of every borough
+        for (QueryResult.Group borough : boroughStatistics.getGroups()) {
+            Double totalCases = borough.getValue(LAST_TOTAL_CASES);
+            if (totalCases != null) {
+                sum += totalCases;
+                count++;
+            }
+        }
 
-        return dataset.getAverage(totalCasesData);
+        return dataset.getAverage(sum, count);
     }
 
     /**
@@ -220,11 +235,7 @@ public class StatsViewController extends ViewController {
      *         d.p.)
      */
     private double getAverageRRGMR() {
-        List<Number> retailRecreationData = dataInDateRange.stream()
-                .map(CovidData::getRetailRecreationGMR)
-                .collect(Collectors.toList());
-
-        return dataset.getAverage(retailRecreationData);
+        return getAverageOfAllBoroughs(SUM_RR_GMR, COUNT_RR_GMR);
     }
 
     /**
@@ -235,11 +246,30 @@ public class StatsViewController extends ViewController {
      *         d.p.)
      */
     private double getAverageGPGMR() {
-        List<Number> groceryPharmacyData = dataInDateRange.stream()
-                .map(CovidData::getGroceryPharmacyGMR)
-                .collect(Collectors.toList());
+        return getAverageOfAllBoroughs(SUM_GP_GMR, COUNT_GP_GMR);
+    }
+
+    /**
+     * Combines the sums and counts of a field in every borough into the average
+     * of all its values in the date range.
+     * 
+     * @param sumIndex   the position of the field's sum in the query
+     * @param countIndex the position of the field's count in the query
+     * @return the average of the field within the date range (to 2 d.p.)
+     */
+    private double getAverageOfAllBoroughs(int sumIndex, int countIndex) {
+        double sum = 0;
+        long count = 0;
+
+        for (QueryResult.Group borough : boroughStatistics.getGroups()) {
+            Double boroughSum = borough.getValue(sumIndex);
+            if (boroughSum != null) {
+                sum += boroughSum;
+                count += borough.getValue(countIndex).longValue();
+            }
+        }
 
-        return dataset.getAverage(groceryPharmacyData);
+        return dataset.getAverage(sum, count);
     }
 
     /**
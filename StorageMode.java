@@ -0,0 +1,35 @@
+/**
+ * Where the columns of the Dataset are held in memory.
+ *
+ * @version 2026.10.18
+ */
+public enum StorageMode {
+    // In int and long arrays on the heap
+    HEAP,
+    // In direct memory outside the heap, which the garbage collector never
+    // copies or scans
+    OFF_HEAP,
+    // In the memory-mapped snapshot file, paged in by the operating system as
+    // the columns are read (OFF_HEAP if there is no snapshot)
+    FILE_BACKED,
+    // In compressed columns on the heap, decoded as they are read
+    COMPRESSED;
+
+    /**
+     * Moves rows into this kind of storage, copying or compressing them if
+     * they are not already held this way.
+     *
+     * @param rows the rows to store
+     * @return the same rows, held in this kind of storage
+     */
+    public ColumnData store(ColumnData rows) {
+        switch (this) {
+            case HEAP:
+                return rows;
+            case COMPRESSED:
+                return rows instanceof CompressedColumnBatch ? rows : CompressedColumnBatch.compress(rows);
+            default:
+                return rows instanceof OffHeapColumnBatch ? rows : OffHeapColumnBatch.copyOf(rows);
+        }
+    }
+}
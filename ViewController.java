@@ -16,8 +16,8 @@ import javafx.scene.layout.StackPane;
  * @version 2023.03.16
  */
 public abstract class ViewController {
-    // Instance of Dataset singleton
-    protected Dataset dataset = Dataset.getInstance();
+    // Instance of Dataset singleton, set once it has finished loading
+    protected Dataset dataset;
 
     @FXML
     protected BorderPane viewPane;
@@ -71,6 +71,26 @@ public abstract class ViewController {
         this.toDate = toDate;
     }
 
+    /**
+     * Called on the JavaFX Application Thread once the dataset has finished
+     * loading in the background. Controllers that need the data to set up their
+     * components override this.
+     * 
+     * @param dataset The loaded Dataset instance.
+     */
+    protected void datasetLoaded(Dataset dataset) {
+        this.dataset = dataset;
+    }
+
+    /**
+     * Called on the JavaFX Application Thread after the data of the dataset
+     * has been replaced, e.g. because the csv file changed. The panel being
+     * shown is refreshed afterwards through updatePanelForDateRange();
+     * controllers that show anything else about the data override this.
+     */
+    protected void datasetReloaded() {
+    }
+
     /**
      * Updates the current panel for the given date range.
      * 
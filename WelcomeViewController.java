@@ -1,11 +1,11 @@
 import java.time.LocalDate;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.List;
 
 import javafx.fxml.FXML;
 import javafx.scene.Parent;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -41,6 +41,9 @@ public class WelcomeViewController extends ViewController {
     @FXML
     private Label validDataRangeLabel;
 
+    @FXML
+    private ProgressBar loadingProgressBar;
+
     /**
      * Initializes the FXML controller class.
      * This method is called by the FXMLLoader when the corresponding FXML file is
@@ -77,12 +80,64 @@ public class WelcomeViewController extends ViewController {
 
         // Make all columns equal width
         dataTable.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
+    }
+
+    /**
+     * Hides the loading progress and shows the range of dates in the dataset.
+     * 
+     * @param dataset The loaded Dataset instance.
+     */
+    @Override
+    protected void datasetLoaded(Dataset dataset) {
+        super.datasetLoaded(dataset);
+        hideLoadingProgress();
+        showDataRange();
+    }
 
-        validDataRangeLabel.setText("The dataset shows data from " + Collections.min(dataset.getData()).getDate()
-                + " to " + Collections.max(dataset.getData()).getDate()
+    /**
+     * Shows the new range of dates after the dataset has been reloaded.
+     */
+    @Override
+    protected void datasetReloaded() {
+        showDataRange();
+    }
+
+    /**
+     * Shows the range of dates in the dataset.
+     */
+    private void showDataRange() {
+        validDataRangeLabel.setText("The dataset shows data from " + dataset.getFirstDate()
+                + " to " + dataset.getLastDate()
                 + " so you can only select dates from that period.");
     }
 
+    /**
+     * Shows how much of the dataset has been loaded.
+     * 
+     * @param progress The fraction of the dataset loaded, from 0 to 1
+     */
+    public void showLoadingProgress(double progress) {
+        loadingProgressBar.setProgress(progress);
+    }
+
+    /**
+     * Tells the user that the dataset could not be loaded.
+     * 
+     * @param error The reason the dataset could not be loaded
+     */
+    public void showLoadingError(Throwable error) {
+        hideLoadingProgress();
+        validDataRangeLabel.setText("The dataset could not be loaded: " + error.getMessage());
+    }
+
+    /**
+     * Removes the progress bar from the welcome pane.
+     */
+    private void hideLoadingProgress() {
+        loadingProgressBar.setVisible(false);
+        loadingProgressBar.setManaged(false);
+    }
+
     /**
      * Handles the event when the date picker is changed. Updates the data table
      * with the chosen date range if valid date chosen, otherwise shows an error
@@ -94,7 +149,7 @@ public class WelcomeViewController extends ViewController {
         // Clear any existing items from the table
         dataTable.getItems().clear();
 
-        ArrayList<CovidData> rangedData = dataset.getDataInDateRange(fromDate, toDate);
+        List<CovidData> rangedData = dataset.getDataInDateRange(fromDate, toDate);
         boolean dataExistsInDateRange = rangedData.size() > 0;
 
         if (dataset.isDateRangeValid(fromDate, toDate) == true) {
@@ -128,7 +183,7 @@ public class WelcomeViewController extends ViewController {
      * 
      * @param dataToShow The data to populate the table with
      */
-    private void populateTable(ArrayList<CovidData> dataToShow) {
+    private void populateTable(List<CovidData> dataToShow) {
         // Add all CovidData objects within the given date range to the table
         for (CovidData covidData : dataToShow) {
             dataTable.getItems().add(covidData);